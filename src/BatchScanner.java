@@ -0,0 +1,252 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.*;
+
+/**
+ * BatchScanner - Scans every .pooh file under a directory concurrently
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Files are found by walking the tree and handed out largest first to a
+ * fixed number of worker threads, so one big file does not start last and
+ * hold up the whole run. Each file is scanned by its own ManualScanner with
+ * a quiet ErrorHandler (small files are read into memory, larger ones are
+ * mapped) and gets its own FileResult. Symbols are added to one
+ * ConcurrentSymbolTable as files finish; files are numbered in path order,
+ * so the project-wide table and error report do not depend on scheduling.
+ *
+ * Usage: java BatchScanner <directory> [--threads N] [--extension .pooh]
+ *          [--max-errors N]
+ */
+public class BatchScanner {
+
+    // Files below this size are read into a heap array; mapping costs more than it saves
+    private static final long MAP_THRESHOLD = 1 << 16;
+
+    /** The outcome of scanning one file; failure is set if it could not be read. */
+    public static class FileResult {
+        private final Path path;
+        private final int index;
+        private final long size;
+        private SymbolTable symbolTable;
+        private List<ErrorHandler.LexicalError> errors = Collections.emptyList();
+        private int errorCount;
+        private ScannerMetrics metrics = new ScannerMetrics();
+        private IOException failure;
+
+        FileResult(Path path, int index, long size) {
+            this.path = path;
+            this.index = index;
+            this.size = size;
+        }
+
+        public Path getPath() { return path; }
+        /** Position of the file in path order; also its file number in the project symbol table. */
+        public int getIndex() { return index; }
+        /** Size in bytes when the batch started, 0 if it could not be read. */
+        public long getSize() { return size; }
+        public SymbolTable getSymbolTable() { return symbolTable; }
+        /** The recorded errors; getErrorCount() also counts those past the per-file limit. */
+        public List<ErrorHandler.LexicalError> getErrors() { return errors; }
+        public int getErrorCount() { return errorCount; }
+        public ScannerMetrics getMetrics() { return metrics; }
+        public IOException getFailure() { return failure; }
+    }
+
+    /** All file results in path order, plus the project-wide symbols and totals. */
+    public static class BatchResult {
+        private final List<FileResult> files;
+        private final ConcurrentSymbolTable symbols;
+        private final ScannerMetrics totals;
+        private final long wallNanos;
+
+        BatchResult(List<FileResult> files, ConcurrentSymbolTable symbols, ScannerMetrics totals, long wallNanos) {
+            this.files = files;
+            this.symbols = symbols;
+            this.totals = totals;
+            this.wallNanos = wallNanos;
+        }
+
+        public List<FileResult> getFiles() { return files; }
+        public ConcurrentSymbolTable getSymbolTable() { return symbols; }
+        /** Sum of the per-file metrics; phase nanos are CPU time across all threads. */
+        public ScannerMetrics getTotals() { return totals; }
+        public long getWallNanos() { return wallNanos; }
+
+        public int getErrorCount() {
+            int total = 0;
+            for (FileResult file : files) total += file.errorCount;
+            return total;
+        }
+
+        public int getFailureCount() {
+            int total = 0;
+            for (FileResult file : files) if (file.failure != null) total++;
+            return total;
+        }
+
+        /** Every recorded error, prefixed by its file, in path order. */
+        public void printErrorReport(PrintStream out) {
+            out.println("=".repeat(60));
+            out.println("PROJECT ERROR REPORT");
+            out.println("=".repeat(60));
+            out.println("Files with errors: " + files.stream().filter(f -> f.errorCount > 0).count()
+                    + " of " + files.size());
+            out.println("Total errors found: " + getErrorCount());
+            out.println("-".repeat(60));
+            for (FileResult file : files) {
+                if (file.failure != null) {
+                    out.println(file.path + ": could not be read: " + file.failure.getMessage());
+                }
+                for (ErrorHandler.LexicalError error : file.errors) {
+                    out.println(file.path + ": " + error);
+                }
+                if (file.errorCount > file.errors.size()) {
+                    out.println(file.path + ": ... " + (file.errorCount - file.errors.size()) + " more errors not recorded");
+                }
+            }
+            out.println("=".repeat(60));
+        }
+    }
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String extension = ".pooh";
+    private int maxErrorsPerFile = ErrorHandler.DEFAULT_MAX_ERRORS;
+
+    /** Most files scanned at the same time; defaults to the number of processors. */
+    public void setThreads(int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        this.threads = threads;
+    }
+    public void setExtension(String extension) { this.extension = extension; }
+    public void setMaxErrorsPerFile(int maxErrors) { this.maxErrorsPerFile = maxErrors; }
+
+    /** Scans every regular file under root whose name ends with the extension. */
+    public BatchResult scan(Path root) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.filter(p -> p.getFileName().toString().endsWith(extension) && Files.isRegularFile(p))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+        return scan(paths);
+    }
+
+    /** Scans the given files; their order sets the file numbers used for symbols and reports. */
+    public BatchResult scan(List<Path> paths) throws IOException {
+        long startTime = System.nanoTime();
+        List<FileResult> files = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) files.add(sized(paths.get(i), i));
+        FileResult[] largestFirst = files.toArray(new FileResult[0]);
+        Arrays.sort(largestFirst, (a, b) -> Long.compare(b.size, a.size));
+
+        ConcurrentSymbolTable symbols = new ConcurrentSymbolTable();
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i; (i = next.getAndIncrement()) < largestFirst.length; ) {
+                scanFile(largestFirst[i], symbols);
+            }
+        };
+
+        int workers = Math.min(threads, largestFirst.length);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers), task -> {
+            Thread thread = new Thread(task, "BatchScanner-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> running = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) running.add(pool.submit(worker));
+            for (Future<?> future : running) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch scan interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Batch scan failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        ScannerMetrics totals = new ScannerMetrics();
+        for (FileResult file : files) totals.add(file.metrics);
+        return new BatchResult(files, symbols, totals, System.nanoTime() - startTime);
+    }
+
+    // A file whose size cannot be read fails on its own instead of aborting the batch
+    private static FileResult sized(Path path, int index) {
+        try {
+            return new FileResult(path, index, Files.size(path));
+        } catch (IOException e) {
+            FileResult file = new FileResult(path, index, 0);
+            file.failure = e;
+            return file;
+        }
+    }
+
+    private void scanFile(FileResult file, ConcurrentSymbolTable symbols) {
+        if (file.failure != null) return;
+        ManualScanner scanner;
+        try {
+            if (file.size < MAP_THRESHOLD) {
+                scanner = new ManualScanner(ByteBuffer.wrap(Files.readAllBytes(file.path)));
+            } else {
+                scanner = ManualScanner.openFile(file.path);
+            }
+        } catch (IOException e) {
+            file.failure = e;
+            return;
+        }
+        ErrorHandler errorHandler = scanner.getErrorHandler();
+        errorHandler.setSink(null);
+        errorHandler.setMaxErrors(maxErrorsPerFile);
+        scanner.scan();
+
+        // Only counts and materialized errors are kept, so the token stream
+        // and the file's bytes can be collected as soon as this returns.
+        file.symbolTable = scanner.getSymbolTable();
+        file.errors = errorHandler.getErrors();
+        file.errorCount = errorHandler.getErrorCount();
+        file.metrics = scanner.getMetrics();
+        symbols.addAll(file.symbolTable, file.index);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java BatchScanner <directory> [--option value ...]");
+            System.exit(1);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        BatchScanner batch = new BatchScanner();
+        if (options.containsKey("threads")) batch.setThreads(Integer.parseInt(options.get("threads")));
+        if (options.containsKey("extension")) batch.setExtension(options.get("extension"));
+        if (options.containsKey("max-errors")) batch.setMaxErrorsPerFile(Integer.parseInt(options.get("max-errors")));
+
+        BatchResult result = batch.scan(Paths.get(args[0]));
+        for (FileResult file : result.getFiles()) {
+            if (file.getFailure() != null) {
+                System.out.printf("%-50s could not be read: %s%n", file.getPath(), file.getFailure().getMessage());
+            } else {
+                System.out.printf("%-50s %10d bytes %9d tokens %7d errors%n", file.getPath(), file.getSize(),
+                        file.getMetrics().getTotalTokens(), file.getErrorCount());
+            }
+        }
+        ScannerMetrics totals = result.getTotals();
+        System.out.printf("%nScanned %d files (%d bytes, %d tokens, %d errors) in %.1f ms%n",
+                result.getFiles().size(), totals.getBytes(), totals.getTotalTokens(), result.getErrorCount(),
+                result.getWallNanos() / 1e6);
+        System.out.println("Metrics: " + totals.toJson());
+        System.out.println();
+        result.printErrorReport(System.out);
+        result.getSymbolTable().printTable();
+    }
+}
@@ -0,0 +1,53 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ByteSource - CharSequence view over a region of a ByteBuffer
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Pooh source is ASCII, so each byte is one character; bytes >= 128 map to
+ * chars 0x80-0xFF (ISO-8859-1) and are reported by the scanner as invalid
+ * characters. Used so lexemes of memory-mapped files can be materialized
+ * without decoding the whole file.
+ */
+public class ByteSource implements CharSequence {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    public ByteSource(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.remaining());
+    }
+
+    public ByteSource(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", limit " + buffer.limit());
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() { return length; }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index);
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end < start || end > length) throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+        return new ByteSource(buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * CharSlice - Read-only CharSequence view over a range of another CharSequence
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Used for lexemes so a token can refer to its text in the original source
+ * without copying it; toString() materializes the characters on demand.
+ */
+public class CharSlice implements CharSequence {
+
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+
+    public CharSlice(CharSequence source, int start, int end) {
+        if (start < 0 || end < start || end > source.length()) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + source.length());
+        }
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() { return end - start; }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) throw new IndexOutOfBoundsException("index " + index);
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to < from || to > end - start) throw new IndexOutOfBoundsException("from " + from + ", to " + to);
+        return new CharSlice(source, start + from, start + to);
+    }
+
+    /** True if this slice holds exactly the characters of s. */
+    public boolean contentEquals(String s) {
+        if (s.length() != end - start) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (source.charAt(start + i) != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return source.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,222 @@
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * ConcurrentSymbolTable - Thread-safe symbol table shared by parallel scanners
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * The table is split into stripes by hash. Each stripe is an open-addressing
+ * table that is probed without locking; only inserting a new identifier
+ * takes the stripe's lock. Frequencies are LongAdders, so threads counting
+ * the same hot identifier do not contend on one field.
+ *
+ * The first occurrence is the smallest (file, line, column) seen, not the
+ * first to arrive, so the result does not depend on thread scheduling.
+ * snapshot() returns a plain SymbolTable in first-occurrence order, which
+ * prints the same as a sequential scan of the files in index order.
+ */
+public class ConcurrentSymbolTable implements Iterable<SymbolTable.SymbolEntry> {
+
+    /** Position of an occurrence; files are ordered by the index the caller assigns. */
+    public static final class Occurrence implements Comparable<Occurrence> {
+        private final int file;
+        private final int line;
+        private final int column;
+
+        public Occurrence(int file, int line, int column) {
+            this.file = file;
+            this.line = line;
+            this.column = column;
+        }
+
+        public int getFile() { return file; }
+        public int getLine() { return line; }
+        public int getColumn() { return column; }
+
+        @Override
+        public int compareTo(Occurrence other) {
+            if (file != other.file) return Integer.compare(file, other.file);
+            if (line != other.line) return Integer.compare(line, other.line);
+            return Integer.compare(column, other.column);
+        }
+
+        private boolean isBefore(int file, int line, int column) {
+            if (this.file != file) return this.file < file;
+            if (this.line != line) return this.line < line;
+            return this.column <= column;
+        }
+    }
+
+    private static final class Entry {
+        final String name;
+        final int hash;
+        final String type;
+        final LongAdder frequency = new LongAdder();
+        final AtomicReference<Occurrence> first;
+
+        Entry(String name, int hash, String type, Occurrence first) {
+            this.name = name;
+            this.hash = hash;
+            this.type = type;
+            this.first = new AtomicReference<>(first);
+        }
+    }
+
+    private static final class Stripe {
+        volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(INITIAL_SLOTS);
+        int count;   // guarded by this
+    }
+
+    private static final int STRIPE_BITS = 6;
+    private static final int INITIAL_SLOTS = 16;
+
+    private final Stripe[] stripes;
+
+    public ConcurrentSymbolTable() {
+        stripes = new Stripe[1 << STRIPE_BITS];
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Stripe();
+    }
+
+    public void addSymbol(String name, String type, int file, int line, int column) {
+        addSymbol(name, 0, name.length(), type, file, line, column);
+    }
+
+    /**
+     * Records an occurrence of the identifier source[start, end) in the given
+     * file. Safe to call from any number of threads; allocates only when the
+     * identifier is new or this occurrence is earlier than the recorded one.
+     */
+    public void addSymbol(CharSequence source, int start, int end, String type, int file, int line, int column) {
+        int hash = SymbolTable.hash(source, start, end);
+        int mixed = hash * 0x9E3779B9;
+        Stripe stripe = stripes[mixed >>> (32 - STRIPE_BITS)];
+
+        Entry entry = probe(stripe.table, mixed, hash, source, start, end);
+        if (entry == null) {
+            synchronized (stripe) {
+                AtomicReferenceArray<Entry> table = stripe.table;
+                entry = probe(table, mixed, hash, source, start, end);
+                if (entry == null) {
+                    entry = new Entry(source.subSequence(start, end).toString(), hash, type,
+                            new Occurrence(file, line, column));
+                    insert(table, mixed, entry);
+                    if (++stripe.count * 2 > table.length()) stripe.table = grow(table);
+                    entry.frequency.increment();
+                    return;
+                }
+            }
+        }
+        entry.frequency.increment();
+
+        Occurrence first = entry.first.get();
+        while (!first.isBefore(file, line, column)) {
+            if (entry.first.compareAndSet(first, new Occurrence(file, line, column))) break;
+            first = entry.first.get();
+        }
+    }
+
+    /** Adds a scanner's finished table for the given file, e.g. after scanning it privately. */
+    public void addAll(SymbolTable table, int file) {
+        for (SymbolTable.SymbolEntry e : table.getAllSymbols()) {
+            String name = e.getName();
+            addSymbol(name, e.getType(), file, e.getFirstOccurrenceLine(), e.getFirstOccurrenceColumn());
+            // addSymbol counted one occurrence
+            probe(name).frequency.add(e.getFrequency() - 1);
+        }
+    }
+
+    public boolean contains(String name) { return probe(name) != null; }
+
+    public long getFrequency(String name) {
+        Entry entry = probe(name);
+        return entry != null ? entry.frequency.sum() : 0;
+    }
+
+    public Occurrence getFirstOccurrence(String name) {
+        Entry entry = probe(name);
+        return entry != null ? entry.first.get() : null;
+    }
+
+    /**
+     * Copies the current contents into a SymbolTable ordered by first
+     * occurrence. Concurrent updates are not blocked; each entry is read once,
+     * so the copy reflects every update that finished before the call.
+     */
+    public SymbolTable snapshot() {
+        List<Entry> all = new ArrayList<>();
+        Map<Entry, Occurrence> firsts = new IdentityHashMap<>();
+        for (Stripe stripe : stripes) {
+            AtomicReferenceArray<Entry> table = stripe.table;
+            for (int i = 0; i < table.length(); i++) {
+                Entry entry = table.get(i);
+                if (entry == null) continue;
+                all.add(entry);
+                firsts.put(entry, entry.first.get());
+            }
+        }
+        all.sort((a, b) -> firsts.get(a).compareTo(firsts.get(b)));
+
+        SymbolTable snapshot = new SymbolTable();
+        for (Entry entry : all) {
+            Occurrence first = firsts.get(entry);
+            snapshot.addEntry(entry.name, entry.type, first.line, first.column,
+                    Math.toIntExact(entry.frequency.sum()));
+        }
+        return snapshot;
+    }
+
+    /** Iterates a snapshot, in first-occurrence order. */
+    @Override
+    public Iterator<SymbolTable.SymbolEntry> iterator() {
+        return snapshot().getAllSymbols().iterator();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) { size += stripe.count; }
+        }
+        return size;
+    }
+
+    public void printTable() { snapshot().printTable(); }
+
+    private Entry probe(String name) {
+        int hash = name.hashCode();
+        int mixed = hash * 0x9E3779B9;
+        return probe(stripes[mixed >>> (32 - STRIPE_BITS)].table, mixed, hash, name, 0, name.length());
+    }
+
+    private static Entry probe(AtomicReferenceArray<Entry> table, int mixed, int hash,
+                               CharSequence source, int start, int end) {
+        int mask = table.length() - 1;
+        for (int slot = slotOf(mixed, mask); ; slot = (slot + 1) & mask) {
+            Entry entry = table.get(slot);
+            if (entry == null) return null;
+            if (entry.hash == hash && SymbolTable.nameEquals(entry.name, source, start, end)) return entry;
+        }
+    }
+
+    private static void insert(AtomicReferenceArray<Entry> table, int mixed, Entry entry) {
+        int mask = table.length() - 1;
+        int slot = slotOf(mixed, mask);
+        while (table.get(slot) != null) slot = (slot + 1) & mask;
+        table.set(slot, entry);
+    }
+
+    // Readers still holding the old table may miss entries inserted after the
+    // copy; they fall through to the locked path, which re-probes the new one.
+    private static AtomicReferenceArray<Entry> grow(AtomicReferenceArray<Entry> table) {
+        AtomicReferenceArray<Entry> grown = new AtomicReferenceArray<>(table.length() * 2);
+        for (int i = 0; i < table.length(); i++) {
+            Entry entry = table.get(i);
+            if (entry != null) insert(grown, entry.hash * 0x9E3779B9, entry);
+        }
+        return grown;
+    }
+
+    // The top STRIPE_BITS bits pick the stripe, so take the slot from the bits below them
+    private static int slotOf(int mixed, int mask) {
+        return (mixed >>> Math.max(0, 32 - STRIPE_BITS - Integer.bitCount(mask))) & mask;
+    }
+}
@@ -0,0 +1,376 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * CorpusGenerator - Seeded generator of synthetic .pooh source files
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Writes Pooh source of any size straight to a stream, holding only the
+ * identifier vocabulary and a small output buffer in memory. The same seed
+ * and settings always give the same bytes, so benchmarks and scaling tests
+ * can regenerate a corpus instead of storing it.
+ *
+ * Tunables: identifier vocabulary size and Zipf skew, token weights,
+ * int/float/exponent ratios, comment density, line length and the rate of
+ * injected lexical errors.
+ *
+ * Usage: java CorpusGenerator <output.pooh> <size, e.g. 64k, 100m, 10g>
+ *          [--preset mixed|identifiers|numbers|comments|errors] [--seed 42]
+ *          [--vocabulary 1000] [--zipf 1.0] [--identifiers 40] [--numbers 25]
+ *          [--booleans 5] [--punctuators 30] [--floats 0.3] [--exponents 0.2]
+ *          [--comments 0.05] [--line-length 60] [--errors 0.0]
+ */
+public class CorpusGenerator {
+
+    private static final String PUNCTUATORS = "(){}[],;:";
+    private static final String INVALID_CHARACTERS = "@$%^&*-+=!?<>~`\"'|/\\.";
+    private static final String ID_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789_";
+    private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private long seed = 42;
+    private int vocabularySize = 1000;
+    private double zipfSkew = 1.0;
+    private double identifierWeight = 40;
+    private double numberWeight = 25;
+    private double booleanWeight = 5;
+    private double punctuatorWeight = 30;
+    private double floatRatio = 0.3;
+    private double exponentRatio = 0.2;
+    private double commentDensity = 0.05;
+    private int lineLength = 60;
+    private double errorRate = 0.0;
+
+    // Generation state
+    private SplittableRandom random;
+    private byte[][] vocabulary;
+    private double[] zipfProbability;
+    private int[] zipfAlias;
+    private OutputStream out;
+    private byte[] buffer;
+    private int bufferPos;
+    private long written;
+
+    /** Default settings: the "mixed" preset. */
+    public CorpusGenerator() {}
+
+    /** Settings for one of the named token mixes used by ScannerBenchmark. */
+    public static CorpusGenerator preset(String name) {
+        CorpusGenerator generator = new CorpusGenerator();
+        switch (name) {
+            case "mixed":
+                break;
+            case "identifiers":
+                generator.setTokenWeights(80, 0, 0, 20);
+                generator.setCommentDensity(0);
+                break;
+            case "numbers":
+                generator.setTokenWeights(0, 100, 0, 0);
+                generator.setFloatRatio(0.5);
+                generator.setCommentDensity(0);
+                break;
+            case "comments":
+                generator.setCommentDensity(0.5);
+                break;
+            case "errors":
+                generator.setErrorRate(0.6);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown preset: " + name);
+        }
+        return generator;
+    }
+
+    public void setSeed(long seed) { this.seed = seed; }
+    public void setVocabularySize(int size) { this.vocabularySize = Math.max(1, size); }
+    public void setZipfSkew(double skew) { this.zipfSkew = skew; }
+    public void setTokenWeights(double identifiers, double numbers, double booleans, double punctuators) {
+        if (identifiers + numbers + booleans + punctuators <= 0) {
+            throw new IllegalArgumentException("At least one token weight must be positive");
+        }
+        this.identifierWeight = identifiers;
+        this.numberWeight = numbers;
+        this.booleanWeight = booleans;
+        this.punctuatorWeight = punctuators;
+    }
+    /** Fraction of numbers that are floats. */
+    public void setFloatRatio(double ratio) { this.floatRatio = ratio; }
+    /** Fraction of floats that have an exponent. */
+    public void setExponentRatio(double ratio) { this.exponentRatio = ratio; }
+    /** Fraction of lines that are ## comments. */
+    public void setCommentDensity(double density) { this.commentDensity = density; }
+    /** Mean line length in characters; lines vary from half to one and a half times this. */
+    public void setLineLength(int length) { this.lineLength = Math.max(2, length); }
+    /** Fraction of tokens replaced by a lexical error. */
+    public void setErrorRate(double rate) { this.errorRate = rate; }
+
+    /** Writes at least size bytes (stopping at the end of a line) to path; returns the bytes written. */
+    public long write(Path path, long size) throws IOException {
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE)) {
+            return generate(file, size);
+        }
+    }
+
+    /** Generates the corpus into memory, for inputs that fit in a String. */
+    public String generate(int size) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size + 2 * lineLength);
+        try {
+            generate(bytes, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String(bytes.toByteArray(), java.nio.charset.StandardCharsets.ISO_8859_1);
+    }
+
+    /** Streams at least size bytes, ending on a newline; returns the bytes written. */
+    public long generate(OutputStream out, long size) throws IOException {
+        this.random = new SplittableRandom(seed);
+        this.vocabulary = buildVocabulary(new SplittableRandom(seed ^ 0x5DEECE66DL), vocabularySize);
+        buildZipfTable(vocabularySize, zipfSkew);
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.bufferPos = 0;
+        this.written = 0;
+
+        double totalWeight = identifierWeight + numberWeight + booleanWeight + punctuatorWeight;
+        try {
+            while (position() < size) {
+                int target = lineLength / 2 + random.nextInt(lineLength + 1);
+                if (random.nextDouble() < commentDensity) {
+                    comment(target);
+                } else {
+                    long lineStart = position();
+                    do {
+                        if (position() != lineStart) put(random.nextInt(4) == 0 ? '\t' : ' ');
+                        if (random.nextDouble() < errorRate) error();
+                        else token(random.nextDouble() * totalWeight);
+                    } while (position() - lineStart < target);
+                }
+                put('\n');
+            }
+            flushBuffer();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        return written;
+    }
+
+    private void token(double pick) {
+        if ((pick -= identifierWeight) < 0) {
+            put(vocabulary[sampleZipf()]);
+        } else if ((pick -= numberWeight) < 0) {
+            if (random.nextDouble() < floatRatio) {
+                putNumber(random.nextInt(1000));
+                put('.');
+                putDigits(1 + random.nextInt(6));
+                if (random.nextDouble() < exponentRatio) exponent();
+            } else {
+                putNumber(random.nextInt(1_000_000));
+            }
+        } else if ((pick -= booleanWeight) < 0) {
+            put(random.nextBoolean() ? "true" : "false");
+        } else {
+            put(PUNCTUATORS.charAt(random.nextInt(PUNCTUATORS.length())));
+        }
+    }
+
+    private void error() {
+        switch (random.nextInt(5)) {
+            case 0:
+                put(INVALID_CHARACTERS.charAt(random.nextInt(INVALID_CHARACTERS.length())));
+                break;
+            case 1: {
+                // Lowercase word that is not a boolean
+                int length = 1 + random.nextInt(8);
+                for (int i = 0; i < length; i++) put(LOWER.charAt(random.nextInt(LOWER.length())));
+                put('x');
+                break;
+            }
+            case 2:
+                // More than 6 decimals
+                putNumber(random.nextInt(100));
+                put('.');
+                putDigits(7 + random.nextInt(4));
+                break;
+            case 3:
+                // Exponent without digits
+                putNumber(random.nextInt(100));
+                put(random.nextBoolean() ? "e" : "e+");
+                break;
+            default: {
+                // Identifier over 31 characters
+                put((char) ('A' + random.nextInt(26)));
+                int length = 31 + random.nextInt(10);
+                for (int i = 0; i < length; i++) put(ID_CHARS.charAt(random.nextInt(ID_CHARS.length())));
+                break;
+            }
+        }
+    }
+
+    private void exponent() {
+        put(random.nextBoolean() ? 'e' : 'E');
+        int sign = random.nextInt(3);
+        if (sign == 1) put('+');
+        else if (sign == 2) put('-');
+        putNumber(random.nextInt(100));
+    }
+
+    private void comment(int target) {
+        put("##");
+        for (int length = 2; length < target; ) {
+            byte[] word = vocabulary[sampleZipf()];
+            put(' ');
+            put(word);
+            length += word.length + 1;
+        }
+    }
+
+    private int sampleZipf() {
+        int rank = random.nextInt(zipfAlias.length);
+        return random.nextDouble() < zipfProbability[rank] ? rank : zipfAlias[rank];
+    }
+
+    /** Distinct valid identifiers of 2 to 13 characters, as ASCII bytes. */
+    private static byte[][] buildVocabulary(SplittableRandom random, int size) {
+        Set<String> names = new LinkedHashSet<>();
+        StringBuilder name = new StringBuilder();
+        while (names.size() < size) {
+            name.setLength(0);
+            name.append((char) ('A' + random.nextInt(26)));
+            int length = 1 + random.nextInt(12);
+            for (int i = 0; i < length; i++) name.append(ID_CHARS.charAt(random.nextInt(ID_CHARS.length())));
+            names.add(name.toString());
+        }
+        byte[][] vocabulary = new byte[size][];
+        int i = 0;
+        for (String n : names) vocabulary[i++] = n.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        return vocabulary;
+    }
+
+    /**
+     * Alias table (Vose's method) for Zipf sampling: rank k has weight
+     * 1 / (k + 1)^skew. Each sample is one table lookup, where a cumulative
+     * table would need a binary search that misses the cache on large
+     * vocabularies.
+     */
+    private void buildZipfTable(int size, double skew) {
+        double[] scaled = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) sum += scaled[k] = 1 / Math.pow(k + 1, skew);
+        for (int k = 0; k < size; k++) scaled[k] *= size / sum;
+
+        zipfProbability = new double[size];
+        zipfAlias = new int[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallCount = 0, largeCount = 0;
+        for (int k = 0; k < size; k++) {
+            if (scaled[k] < 1) small[smallCount++] = k;
+            else large[largeCount++] = k;
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            zipfProbability[less] = scaled[less];
+            zipfAlias[less] = more;
+            scaled[more] += scaled[less] - 1;
+            if (scaled[more] < 1) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        while (largeCount > 0) zipfProbability[large[--largeCount]] = 1;
+        while (smallCount > 0) zipfProbability[small[--smallCount]] = 1;
+    }
+
+    // ─── Output buffer ───────────────────────────────────────────────────────
+
+    private long position() { return written + bufferPos; }
+
+    private void put(char c) {
+        if (bufferPos == buffer.length) flushBuffer();
+        buffer[bufferPos++] = (byte) c;
+    }
+
+    private void put(String s) {
+        for (int i = 0; i < s.length(); i++) put(s.charAt(i));
+    }
+
+    private void put(byte[] bytes) {
+        if (bufferPos + bytes.length > buffer.length) flushBuffer();
+        System.arraycopy(bytes, 0, buffer, bufferPos, bytes.length);
+        bufferPos += bytes.length;
+    }
+
+    private void putNumber(int n) {
+        if (bufferPos + 10 > buffer.length) flushBuffer();
+        int digits = 1;
+        for (int t = n; t >= 10; t /= 10) digits++;
+        for (int i = bufferPos + digits - 1; i >= bufferPos; i--, n /= 10) buffer[i] = (byte) ('0' + n % 10);
+        bufferPos += digits;
+    }
+
+    private void putDigits(int count) {
+        for (int i = 0; i < count; i++) put((char) ('0' + random.nextInt(10)));
+    }
+
+    // put() is called from deep inside generation, so write errors are
+    // unchecked here and unwrapped again in generate()
+    private void flushBuffer() {
+        try {
+            out.write(buffer, 0, bufferPos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        written += bufferPos;
+        bufferPos = 0;
+    }
+
+    // ─── Command line ────────────────────────────────────────────────────────
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java CorpusGenerator <output.pooh> <size> [--option value ...]");
+            System.exit(1);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 2; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        CorpusGenerator generator = preset(options.getOrDefault("preset", "mixed"));
+        if (options.containsKey("seed")) generator.setSeed(Long.parseLong(options.get("seed")));
+        if (options.containsKey("vocabulary")) generator.setVocabularySize(Integer.parseInt(options.get("vocabulary")));
+        if (options.containsKey("zipf")) generator.setZipfSkew(Double.parseDouble(options.get("zipf")));
+        if (options.containsKey("identifiers") || options.containsKey("numbers")
+                || options.containsKey("booleans") || options.containsKey("punctuators")) {
+            generator.setTokenWeights(
+                    Double.parseDouble(options.getOrDefault("identifiers", String.valueOf(generator.identifierWeight))),
+                    Double.parseDouble(options.getOrDefault("numbers", String.valueOf(generator.numberWeight))),
+                    Double.parseDouble(options.getOrDefault("booleans", String.valueOf(generator.booleanWeight))),
+                    Double.parseDouble(options.getOrDefault("punctuators", String.valueOf(generator.punctuatorWeight))));
+        }
+        if (options.containsKey("floats")) generator.setFloatRatio(Double.parseDouble(options.get("floats")));
+        if (options.containsKey("exponents")) generator.setExponentRatio(Double.parseDouble(options.get("exponents")));
+        if (options.containsKey("comments")) generator.setCommentDensity(Double.parseDouble(options.get("comments")));
+        if (options.containsKey("line-length")) generator.setLineLength(Integer.parseInt(options.get("line-length")));
+        if (options.containsKey("errors")) generator.setErrorRate(Double.parseDouble(options.get("errors")));
+
+        long start = System.nanoTime();
+        long size = generator.write(Paths.get(args[0]), parseSize(args[1]));
+        System.out.printf("Wrote %d bytes to %s in %.1f s%n", size, args[0], (System.nanoTime() - start) / 1e9);
+    }
+
+    static long parseSize(String size) {
+        String s = size.toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (s.endsWith("k")) unit = 1L << 10;
+        else if (s.endsWith("m")) unit = 1L << 20;
+        else if (s.endsWith("g")) unit = 1L << 30;
+        if (unit != 1) s = s.substring(0, s.length() - 1);
+        return Long.parseLong(s) * unit;
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * DfaTables - Compiled transition tables for the ManualScanner DFA
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Characters are first mapped to one of NUM_CLASSES character classes
+ * (ASCII only; everything >= 128 is CLASS_OTHER), then the scanner follows
+ * TRANSITIONS[state][class] until it reaches DEAD and backs up to the last
+ * accepting state (longest match). ACCEPT_TYPE gives the token type of an
+ * accepting state and ACCEPT_ERROR the error it reports, if any.
+ *
+ * Whitespace and newlines are not part of the DFA; the scanner skips them
+ * before entering START so it can keep line/column counts.
+ *
+ * For the hot loop the matrix is also flattened into NEXT, whose entries are
+ * pre-multiplied row offsets (state << CLASS_BITS), and states are numbered
+ * so that every state >= FIRST_ACCEPTING is accepting. The only non-accepting
+ * state reachable after START (INT_DOT) is entered from an accepting state,
+ * so instead of tracking the last match per character the scanner backs up
+ * one character to FALLBACK[state] when it stops in a non-accepting state.
+ */
+public final class DfaTables {
+
+    // Character classes
+    public static final int CLASS_OTHER = 0;
+    public static final int CLASS_WHITESPACE = 1;   // ' ' \t \r
+    public static final int CLASS_NEWLINE = 2;      // \n
+    public static final int CLASS_DIGIT = 3;
+    public static final int CLASS_UPPER = 4;        // A-Z except E
+    public static final int CLASS_UPPER_E = 5;
+    public static final int CLASS_LOWER = 6;        // a-z not listed below
+    public static final int CLASS_LOWER_E = 7;
+    public static final int CLASS_T = 8;
+    public static final int CLASS_R = 9;
+    public static final int CLASS_U = 10;
+    public static final int CLASS_F = 11;
+    public static final int CLASS_A = 12;
+    public static final int CLASS_L = 13;
+    public static final int CLASS_S = 14;
+    public static final int CLASS_UNDERSCORE = 15;
+    public static final int CLASS_DOT = 16;
+    public static final int CLASS_SIGN = 17;        // + -
+    public static final int CLASS_HASH = 18;
+    public static final int CLASS_PUNCT = 19;       // 19..27 = ( ) { } [ ] , ; :
+    public static final int NUM_CLASSES = 28;
+    public static final int CLASS_BITS = 5;
+
+    private static final String PUNCTUATORS = "(){}[],;:";
+    private static final TokenType[] PUNCT_TYPES = {
+        TokenType.LPAREN, TokenType.RPAREN, TokenType.LBRACE, TokenType.RBRACE,
+        TokenType.LBRACKET, TokenType.RBRACKET, TokenType.COMMA, TokenType.SEMICOLON, TokenType.COLON
+    };
+
+    // States
+    public static final int DEAD = 0;
+    public static final int START = 1;
+    static final int INT_DOT = 2;           // "12." - accepting only once a digit follows
+    public static final int FIRST_ACCEPTING = 3;
+    static final int INT = 3;
+    static final int DEC_1 = 4;             // DEC_1..DEC_6 = 1..6 decimal digits
+    static final int DEC_LONG = 10;         // more than 6 decimal digits
+    static final int EXP_START = 11;
+    static final int EXP_SIGN = 12;
+    static final int EXPONENT = 13;
+    static final int ID_1 = 14;             // ID_1..ID_31 = identifier of length 1..31
+    static final int ID_LONG = 45;          // identifier longer than 31 characters
+    static final int LOWER = 46;            // lowercase word that is not a boolean
+    static final int T = 47, TR = 48, TRU = 49, TRUE = 50;
+    static final int F = 51, FA = 52, FAL = 53, FALS = 54, FALSE = 55;
+    static final int HASH = 56;
+    static final int COMMENT = 57;
+    static final int PUNCT = 58;            // 58..66, one per punctuator
+    static final int INVALID = 67;
+    public static final int NUM_STATES = 68;
+
+    static final byte[] CHAR_CLASS = new byte[128];
+    static final int[][] TRANSITIONS = new int[NUM_STATES][NUM_CLASSES];
+    static final TokenType[] ACCEPT_TYPE = new TokenType[NUM_STATES];
+    static final ErrorHandler.ErrorType[] ACCEPT_ERROR = new ErrorHandler.ErrorType[NUM_STATES];
+    static final int[] NEXT = new int[NUM_STATES << CLASS_BITS];
+    static final int[] FALLBACK = new int[NUM_STATES];
+
+    private static final int[] LOWERCASE_CLASSES = {
+        CLASS_LOWER, CLASS_LOWER_E, CLASS_T, CLASS_R, CLASS_U, CLASS_F, CLASS_A, CLASS_L, CLASS_S
+    };
+
+    static {
+        buildCharClasses();
+        buildTransitions();
+        buildAcceptTables();
+        for (int state = 0; state < NUM_STATES; state++) {
+            for (int cls = 0; cls < NUM_CLASSES; cls++) {
+                int target = TRANSITIONS[state][cls];
+                NEXT[(state << CLASS_BITS) + cls] = target << CLASS_BITS;
+                if (target != DEAD && target < FIRST_ACCEPTING) {
+                    if (state < FIRST_ACCEPTING || (FALLBACK[target] != DEAD && FALLBACK[target] != state)) {
+                        throw new IllegalStateException("state " + target + " has no unique accepting predecessor");
+                    }
+                    FALLBACK[target] = state;
+                }
+            }
+        }
+    }
+
+    private DfaTables() { }
+
+    public static int classOf(char c) { return c < 128 ? CHAR_CLASS[c] : CLASS_OTHER; }
+
+    private static void buildCharClasses() {
+        CHAR_CLASS[' '] = CLASS_WHITESPACE;
+        CHAR_CLASS['\t'] = CLASS_WHITESPACE;
+        CHAR_CLASS['\r'] = CLASS_WHITESPACE;
+        CHAR_CLASS['\n'] = CLASS_NEWLINE;
+        for (char c = '0'; c <= '9'; c++) CHAR_CLASS[c] = CLASS_DIGIT;
+        for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASS[c] = CLASS_UPPER;
+        CHAR_CLASS['E'] = CLASS_UPPER_E;
+        for (char c = 'a'; c <= 'z'; c++) CHAR_CLASS[c] = CLASS_LOWER;
+        CHAR_CLASS['e'] = CLASS_LOWER_E;
+        CHAR_CLASS['t'] = CLASS_T;
+        CHAR_CLASS['r'] = CLASS_R;
+        CHAR_CLASS['u'] = CLASS_U;
+        CHAR_CLASS['f'] = CLASS_F;
+        CHAR_CLASS['a'] = CLASS_A;
+        CHAR_CLASS['l'] = CLASS_L;
+        CHAR_CLASS['s'] = CLASS_S;
+        CHAR_CLASS['_'] = CLASS_UNDERSCORE;
+        CHAR_CLASS['.'] = CLASS_DOT;
+        CHAR_CLASS['+'] = CLASS_SIGN;
+        CHAR_CLASS['-'] = CLASS_SIGN;
+        CHAR_CLASS['#'] = CLASS_HASH;
+        for (int i = 0; i < PUNCTUATORS.length(); i++) CHAR_CLASS[PUNCTUATORS.charAt(i)] = (byte) (CLASS_PUNCT + i);
+    }
+
+    private static void buildTransitions() {
+        int[] start = TRANSITIONS[START];
+        start[CLASS_OTHER] = INVALID;
+        start[CLASS_DOT] = INVALID;
+        start[CLASS_SIGN] = INVALID;
+        start[CLASS_UNDERSCORE] = INVALID;
+
+        // Numbers: [0-9]+ and [0-9]+\.[0-9]{1,6}([eE][+-]?[0-9]+)?
+        start[CLASS_DIGIT] = INT;
+        TRANSITIONS[INT][CLASS_DIGIT] = INT;
+        TRANSITIONS[INT][CLASS_DOT] = INT_DOT;
+        TRANSITIONS[INT][CLASS_LOWER_E] = EXP_START;
+        TRANSITIONS[INT][CLASS_UPPER_E] = EXP_START;
+        TRANSITIONS[INT_DOT][CLASS_DIGIT] = DEC_1;
+        for (int state = DEC_1; state < DEC_1 + 6; state++) {
+            TRANSITIONS[state][CLASS_DIGIT] = state + 1 < DEC_1 + 6 ? state + 1 : DEC_LONG;
+            TRANSITIONS[state][CLASS_LOWER_E] = EXP_START;
+            TRANSITIONS[state][CLASS_UPPER_E] = EXP_START;
+        }
+        TRANSITIONS[DEC_LONG][CLASS_DIGIT] = DEC_LONG;
+        TRANSITIONS[EXP_START][CLASS_DIGIT] = EXPONENT;
+        TRANSITIONS[EXP_START][CLASS_SIGN] = EXP_SIGN;
+        TRANSITIONS[EXP_SIGN][CLASS_DIGIT] = EXPONENT;
+        TRANSITIONS[EXPONENT][CLASS_DIGIT] = EXPONENT;
+
+        // Identifiers: [A-Z][a-z0-9_]{0,30}, longer runs are an error
+        start[CLASS_UPPER] = ID_1;
+        start[CLASS_UPPER_E] = ID_1;
+        for (int state = ID_1; state <= ID_LONG; state++) {
+            int next = state < ID_LONG ? state + 1 : ID_LONG;
+            for (int cls : LOWERCASE_CLASSES) TRANSITIONS[state][cls] = next;
+            TRANSITIONS[state][CLASS_DIGIT] = next;
+            TRANSITIONS[state][CLASS_UNDERSCORE] = next;
+        }
+
+        // Lowercase words: true|false, anything else is an invalid identifier
+        for (int cls : LOWERCASE_CLASSES) {
+            start[cls] = LOWER;
+            for (int state : new int[] { LOWER, T, TR, TRU, TRUE, F, FA, FAL, FALS, FALSE }) {
+                TRANSITIONS[state][cls] = LOWER;
+            }
+        }
+        start[CLASS_T] = T;
+        TRANSITIONS[T][CLASS_R] = TR;
+        TRANSITIONS[TR][CLASS_U] = TRU;
+        TRANSITIONS[TRU][CLASS_LOWER_E] = TRUE;
+        start[CLASS_F] = F;
+        TRANSITIONS[F][CLASS_A] = FA;
+        TRANSITIONS[FA][CLASS_L] = FAL;
+        TRANSITIONS[FAL][CLASS_S] = FALS;
+        TRANSITIONS[FALS][CLASS_LOWER_E] = FALSE;
+
+        // Comments: ##[^\n]*, a lone # is an invalid character
+        start[CLASS_HASH] = HASH;
+        TRANSITIONS[HASH][CLASS_HASH] = COMMENT;
+        for (int cls = 0; cls < NUM_CLASSES; cls++) {
+            if (cls != CLASS_NEWLINE) TRANSITIONS[COMMENT][cls] = COMMENT;
+        }
+
+        for (int i = 0; i < PUNCT_TYPES.length; i++) start[CLASS_PUNCT + i] = PUNCT + i;
+    }
+
+    private static void buildAcceptTables() {
+        ACCEPT_TYPE[INT] = TokenType.INT_LIT;
+        for (int state = DEC_1; state < DEC_1 + 6; state++) ACCEPT_TYPE[state] = TokenType.FLOAT_LIT;
+        ACCEPT_TYPE[EXPONENT] = TokenType.FLOAT_LIT;
+        for (int state = ID_1; state < ID_LONG; state++) ACCEPT_TYPE[state] = TokenType.IDENTIFIER;
+        ACCEPT_TYPE[TRUE] = TokenType.BOOLEAN_LIT;
+        ACCEPT_TYPE[FALSE] = TokenType.BOOLEAN_LIT;
+        ACCEPT_TYPE[COMMENT] = TokenType.SINGLE_LINE_COMMENT;
+        for (int i = 0; i < PUNCT_TYPES.length; i++) ACCEPT_TYPE[PUNCT + i] = PUNCT_TYPES[i];
+
+        acceptError(DEC_LONG, ErrorHandler.ErrorType.TOO_MANY_DECIMALS);
+        acceptError(EXP_START, ErrorHandler.ErrorType.MALFORMED_NUMBER);
+        acceptError(EXP_SIGN, ErrorHandler.ErrorType.MALFORMED_NUMBER);
+        acceptError(ID_LONG, ErrorHandler.ErrorType.INVALID_IDENTIFIER);
+        for (int state : new int[] { LOWER, T, TR, TRU, F, FA, FAL, FALS }) {
+            acceptError(state, ErrorHandler.ErrorType.INVALID_IDENTIFIER);
+        }
+        acceptError(HASH, ErrorHandler.ErrorType.INVALID_CHARACTER);
+        acceptError(INVALID, ErrorHandler.ErrorType.INVALID_CHARACTER);
+    }
+
+    private static void acceptError(int state, ErrorHandler.ErrorType error) {
+        ACCEPT_TYPE[state] = TokenType.ERROR;
+        ACCEPT_ERROR[state] = error;
+    }
+}
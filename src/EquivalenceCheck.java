@@ -0,0 +1,276 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.*;
+
+/**
+ * EquivalenceCheck - Checks that every way of scanning a file gives the same result
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Each file is scanned once as a String by a new ManualScanner, and that
+ * result is the reference. It is compared (tokens, symbol table, recorded
+ * errors and error count) with:
+ *   inputs  - CharSequence, StringBuilder and char[] regions embedded in a
+ *             larger document, heap and direct ByteBuffers, a mapped file,
+ *             a file mapped in small windows (symbols, errors and counts,
+ *             as windowed scans keep no tokens), lazy positions, the
+ *             nextToken() stream (comments and whitespace skipped) and
+ *             scanParallel();
+ *   pool    - ScannerPool scanners acquired after scanning the other files
+ *             with changed settings, both ManualScanner and Yylex (the
+ *             latter against a new Yylex);
+ *   tokens  - TokenFile save, load and compare (TokenFile check);
+ *   cache   - ScanCache misses, hits, reopening and eviction in a temporary
+ *             directory.
+ * Every check prints one OK or FAILED line.
+ *
+ * Usage: java EquivalenceCheck [file.pooh ...]   (defaults to tests/test1-5.pooh)
+ * Exits with status 1 if any check fails.
+ */
+public class EquivalenceCheck {
+
+    // Small enough that the test files span several mapping windows; raised
+    // to fit the longest line, as a window must end on a newline
+    private static final int SMALL_WINDOW = 256;
+    // Subject of the checks that cover every file at once
+    private static final Path ALL_FILES = Paths.get("(all files)");
+    private static final String PREFIX = "## lines before the region\nX 1\n";
+
+    private int failures;
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (args.length == 0) {
+            for (int i = 1; i <= 5; i++) files.add(Paths.get("tests/test" + i + ".pooh"));
+        } else {
+            for (String arg : args) files.add(Paths.get(arg));
+        }
+
+        EquivalenceCheck check = new EquivalenceCheck();
+        for (Path file : files) check.checkInputs(file);
+        check.checkPool(files);
+        for (Path file : files) check.report("tokens", file, "round trip", TokenFile.checkRoundTrip(file));
+        check.checkCache(files);
+
+        System.out.println(check.failures == 0 ? "All checks passed" : check.failures + " checks FAILED");
+        if (check.failures > 0) System.exit(1);
+    }
+
+    private void checkInputs(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        // Latin-1 matches the byte-per-character ByteBuffer scans
+        String source = new String(bytes, StandardCharsets.ISO_8859_1);
+        String expected = describe(scan(new ManualScanner(source)));
+
+        int prefixLines = (int) PREFIX.chars().filter(c -> c == '\n').count();
+        String document = PREFIX + source + "\n## after\n";
+        compare("inputs", file, "CharSequence", expected, describe(scan(new ManualScanner((CharSequence) source))));
+        compare("inputs", file, "String region", expected,
+                describeShifted(scan(new ManualScanner(document, PREFIX.length(), source.length(), 1, 1)), 0));
+        compare("inputs", file, "StringBuilder region", expected,
+                describe(scan(new ManualScanner(new StringBuilder(document), PREFIX.length(), source.length(), 1, 1))));
+        compare("inputs", file, "char[] region", expected,
+                describe(scan(new ManualScanner(document.toCharArray(), PREFIX.length(), source.length(), 1, 1))));
+        compare("inputs", file, "CharBuffer", expected, describe(scan(new ManualScanner(CharBuffer.wrap(source.toCharArray())))));
+        // A region that keeps its real line numbers must differ only by that offset
+        ManualScanner placed = scan(new ManualScanner(document, PREFIX.length(), source.length(), prefixLines + 1, 1));
+        compare("inputs", file, "region at line " + (prefixLines + 1), expected, describeShifted(placed, prefixLines));
+
+        compare("inputs", file, "ByteBuffer", expected, describe(scan(new ManualScanner(ByteBuffer.wrap(bytes)))));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2).put((byte) ' ').put(bytes).put((byte) ' ');
+        direct.position(1).limit(1 + bytes.length);
+        compare("inputs", file, "direct ByteBuffer", expected, describe(scan(new ManualScanner(direct))));
+        ManualScanner mapped = ManualScanner.openFile(file);
+        compare("inputs", file, "mapped file", expected, describe(scan(mapped)));
+
+        ManualScanner reference = scan(new ManualScanner(source));
+        int longestLine = 0;
+        for (int start = 0, i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                longestLine = Math.max(longestLine, i + 1 - start);
+                start = i + 1;
+            }
+        }
+        ManualScanner windowed = ManualScanner.openFile(file, Math.max(SMALL_WINDOW, longestLine));
+        windowed.getErrorHandler().setSink(null);
+        windowed.scan();
+        compare("inputs", file, "mapped windows", describeTotals(reference), describeTotals(windowed));
+
+        ManualScanner lazy = new ManualScanner(source);
+        lazy.setLazyPositions(true);
+        compare("inputs", file, "lazy positions", expected, describe(scan(lazy)));
+
+        ManualScanner streamed = quiet(new ManualScanner(source));
+        List<Token> tokens = new ArrayList<>();
+        for (Token token : streamed) tokens.add(token);
+        compare("inputs", file, "nextToken stream", tokensOf(reference.getFilteredTokens()), tokensOf(tokens));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ManualScanner parallel = quiet(new ManualScanner(source));
+            parallel.scanParallel(pool);
+            compare("inputs", file, "scanParallel", expected, describe(parallel));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void checkPool(List<Path> files) throws IOException {
+        List<String> sources = new ArrayList<>();
+        for (Path file : files) sources.add(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1));
+
+        // Two rounds, so the second acquires scanners that already scanned other files
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < files.size(); i++) {
+                String source = sources.get(i);
+                String expected = describe(scan(new ManualScanner(source)));
+
+                ManualScanner pooled = ScannerPool.manual(source);
+                String actual = describe(scan(pooled));
+                // Settings changed here must not reach the next acquire; a kept
+                // error limit of 1 would show up as missing recorded errors
+                pooled.setLazyPositions(true);
+                pooled.getErrorHandler().setMaxErrors(1);
+                ScannerPool.release(pooled);
+                compare("pool", files.get(i), "ManualScanner round " + (round + 1), expected, actual);
+
+                Yylex fresh = new Yylex(source);
+                fresh.getErrorHandler().setSink(null);
+                String expectedYylex = describeYylex(fresh, fresh.scanAll());
+                Yylex reused = ScannerPool.yylex(source);
+                reused.getErrorHandler().setSink(null);
+                String actualYylex = describeYylex(reused, reused.scanAll());
+                ScannerPool.release(reused);
+                compare("pool", files.get(i), "Yylex round " + (round + 1), expectedYylex, actualYylex);
+            }
+        }
+    }
+
+    private void checkCache(List<Path> files) throws IOException {
+        Path directory = Files.createTempDirectory("equivalence-cache");
+        try {
+            ScanCache cache = new ScanCache(directory, Long.MAX_VALUE);
+            cache.setErrorSink(null);
+            for (Path file : files) {
+                String expected = describe(scan(ManualScanner.openFile(file)));
+                long misses = cache.getMisses();
+                compare("cache", file, "miss", expected, describe(cache.scanFile(file)));
+                long hits = cache.getHits();
+                compare("cache", file, "hit", expected, describe(cache.scanFile(file)));
+                report("cache", file, "one miss then one hit",
+                        cache.getMisses() == misses + 1 && cache.getHits() == hits + 1);
+            }
+
+            // A reopened cache finds the entries already on disk
+            ScanCache reopened = new ScanCache(directory, Long.MAX_VALUE);
+            reopened.setErrorSink(null);
+            for (Path file : files) reopened.scanFile(file);
+            report("cache", ALL_FILES, "reopened, all hits",
+                    reopened.getHits() == files.size() && reopened.getMisses() == 0);
+
+            // Room for about one entry: older entries are evicted, and results stay the same
+            long largest;
+            try (Stream<Path> entries = Files.list(directory)) {
+                largest = entries.mapToLong(path -> path.toFile().length()).max().orElse(0);
+            }
+            ScanCache small = new ScanCache(directory, largest);
+            small.setErrorSink(null);
+            report("cache", ALL_FILES, "evicted on open",
+                    small.getSizeBytes() <= largest && small.getEvictions() > 0 == files.size() > 1);
+            for (Path file : files) {
+                compare("cache", file, "after eviction", describe(scan(ManualScanner.openFile(file))),
+                        describe(small.scanFile(file)));
+            }
+            report("cache", ALL_FILES, "size stays bounded", small.getSizeBytes() <= largest);
+        } finally {
+            try (Stream<Path> entries = Files.list(directory)) {
+                for (Path entry : (Iterable<Path>) entries::iterator) Files.delete(entry);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static ManualScanner quiet(ManualScanner scanner) {
+        scanner.getErrorHandler().setSink(null);
+        return scanner;
+    }
+
+    private static ManualScanner scan(ManualScanner scanner) {
+        quiet(scanner).scan();
+        return scanner;
+    }
+
+    private static String describe(ManualScanner scanner) {
+        return describeShifted(scanner, 0);
+    }
+
+    // Tokens, symbols and errors with lineShift taken off every line number
+    private static String describeShifted(ManualScanner scanner, int lineShift) {
+        StringBuilder out = new StringBuilder();
+        TokenStream tokens = scanner.getTokens();
+        for (int i = 0; i < tokens.size(); i++) {
+            out.append(tokens.getType(i)).append(' ').append(tokens.getLexeme(i)).append(' ')
+               .append(tokens.getLine(i) - lineShift).append(':').append(tokens.getColumn(i))
+               .append(" #").append(tokens.getSymbolId(i)).append('\n');
+        }
+        for (SymbolTable.SymbolEntry entry : scanner.getSymbolTable().getAllSymbols()) {
+            out.append(entry.getName()).append(' ').append(entry.getType()).append(' ')
+               .append(entry.getFirstOccurrenceLine() - lineShift).append(':').append(entry.getFirstOccurrenceColumn())
+               .append(" x").append(entry.getFrequency()).append('\n');
+        }
+        return out.append(describeErrors(scanner.getErrorHandler(), lineShift)).toString();
+    }
+
+    // What a windowed scan keeps: symbols, errors and per-type token counts
+    private static String describeTotals(ManualScanner scanner) {
+        StringBuilder out = new StringBuilder();
+        for (SymbolTable.SymbolEntry entry : scanner.getSymbolTable().getAllSymbols()) out.append(entry).append('\n');
+        out.append(describeErrors(scanner.getErrorHandler(), 0));
+        return out.append(new TreeMap<>(scanner.getTokenCounts())).toString();
+    }
+
+    private static String describeErrors(ErrorHandler errors, int lineShift) {
+        StringBuilder out = new StringBuilder();
+        for (ErrorHandler.LexicalError error : errors.getErrors()) {
+            out.append(error.getType()).append(' ').append(error.getLexeme()).append(' ')
+               .append(error.getLine() - lineShift).append(':').append(error.getColumn())
+               .append(' ').append(error.getReason()).append('\n');
+        }
+        return out.append("errors ").append(errors.getErrorCount()).append('\n').toString();
+    }
+
+    private static String describeYylex(Yylex scanner, List<Token> tokens) {
+        StringBuilder out = new StringBuilder(tokensOf(tokens));
+        for (SymbolTable.SymbolEntry entry : scanner.getSymbolTable().getAllSymbols()) out.append(entry).append('\n');
+        return out.append(describeErrors(scanner.getErrorHandler(), 0)).toString();
+    }
+
+    private static String tokensOf(List<Token> tokens) {
+        return tokens.stream().map(Token::toString).collect(Collectors.joining("\n"));
+    }
+
+    private void compare(String group, Path file, String name, String expected, String actual) {
+        report(group, file, name, expected.equals(actual));
+        if (!expected.equals(actual)) {
+            String[] want = expected.split("\n", -1);
+            String[] got = actual.split("\n", -1);
+            for (int i = 0; i < Math.max(want.length, got.length); i++) {
+                String w = i < want.length ? want[i] : "(none)";
+                String g = i < got.length ? got[i] : "(none)";
+                if (!w.equals(g)) {
+                    System.out.println("    first difference at line " + (i + 1) + ":\n      expected " + w + "\n      actual   " + g);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void report(String group, Path file, String name, boolean ok) {
+        if (!ok) failures++;
+        System.out.printf("%-7s %-22s %-28s %s%n", group, file.getFileName(), name, ok ? "OK" : "FAILED");
+    }
+}
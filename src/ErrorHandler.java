@@ -1,34 +1,44 @@
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * ErrorHandler - Handles lexical errors during scanning
  * CS4031 - Compiler Construction Assignment 01
- * 
+ *
  * Error Types: Invalid characters, Malformed literals, Invalid identifiers
  * Error Reporting: Error type, line, column, lexeme, reason
  * Error Recovery: Skip to next valid token, continue scanning
+ *
+ * Errors are stored as primitive records (type, line, column, offset,
+ * length) into the scanned source; lexeme, reason and message are only
+ * built when an error is printed or asked for. Printing goes to a Sink in
+ * batches from a background thread, so a scan of garbage input does not
+ * wait on the console; errors still unwritten when the JVM exits, e.g. of a
+ * stream abandoned before EOF, are written by a shutdown hook. After
+ * maxErrors records only the per-type counts keep growing.
  */
 public class ErrorHandler {
-    
+
     public enum ErrorType {
         INVALID_CHARACTER("Invalid Character"),
         MALFORMED_NUMBER("Malformed Number"),
         INVALID_IDENTIFIER("Invalid Identifier"),
         IDENTIFIER_TOO_LONG("Identifier Too Long"),
         TOO_MANY_DECIMALS("Too Many Decimal Places");
-        
+
         private final String description;
         ErrorType(String description) { this.description = description; }
         public String getDescription() { return description; }
     }
-    
+
     public static class LexicalError {
         private ErrorType type;
         private int line;
         private int column;
         private String lexeme;
         private String reason;
-        
+
         public LexicalError(ErrorType type, int line, int column, String lexeme, String reason) {
             this.type = type;
             this.line = line;
@@ -36,66 +46,382 @@ public class ErrorHandler {
             this.lexeme = lexeme;
             this.reason = reason;
         }
-        
+
         public ErrorType getType() { return type; }
         public int getLine() { return line; }
         public int getColumn() { return column; }
         public String getLexeme() { return lexeme; }
         public String getReason() { return reason; }
-        
+
         @Override
         public String toString() {
-            return String.format("[%s] Line: %d, Col: %d, Lexeme: \"%s\", Reason: %s",
-                    type.getDescription(), line, column, lexeme, reason);
+            StringBuilder out = new StringBuilder(lexeme.length() + (reason != null ? reason.length() : 4) + 48);
+            try {
+                appendTo(out);
+            } catch (IOException e) {
+                throw new AssertionError(e);  // StringBuilder does not throw
+            }
+            return out.toString();
+        }
+
+        /** Appends the toString() form to out without building it as a String first. */
+        public void appendTo(Appendable out) throws IOException {
+            out.append('[').append(type.getDescription()).append("] Line: ");
+            Token.appendInt(out, line);
+            out.append(", Col: ");
+            Token.appendInt(out, column);
+            out.append(", Lexeme: \"").append(lexeme).append("\", Reason: ").append(reason);
         }
     }
-    
-    private List<LexicalError> errors;
-    
+
+    /** Receives batches of errors in report order, always on the flusher thread. */
+    public interface Sink {
+        void write(List<LexicalError> errors);
+    }
+
+    /** The original console output: one "ERROR: ..." line per error on System.err. */
+    public static final Sink STDERR = errors -> {
+        StringBuilder out = new StringBuilder();
+        for (LexicalError error : errors) out.append("ERROR: ").append(error).append(System.lineSeparator());
+        System.err.print(out);
+        System.err.flush();
+    };
+
+    public static final int DEFAULT_MAX_ERRORS = 1 << 20;
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int BATCH_SIZE = 256;
+    private static final ErrorType[] TYPES = ErrorType.values();
+
+    // One daemon thread formats and writes for every handler
+    private static final ExecutorService FLUSHER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "ErrorHandler-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Handlers holding errors their sink has not been given yet, written out at exit
+    private static final Set<ErrorHandler> UNFLUSHED = ConcurrentHashMap.newKeySet();
+    private static final long EXIT_FLUSH_SECONDS = 5;
+    // Stored for a custom reason that is null, since a null slot means the default reason
+    private static final String NULL_REASON = new String();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                FLUSHER.submit(() -> UNFLUSHED.forEach(ErrorHandler::drain)).get(EXIT_FLUSH_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                // Exiting anyway; whatever was not written is lost
+            }
+        }, "ErrorHandler-exit"));
+    }
+
+    // Record columns, in chunks that never move once allocated, so the flusher
+    // can read records below count while the scanner appends.
+    private byte[][] types;
+    private int[][] lines;
+    private int[][] columns;
+    private int[][] offsets;
+    private int[][] lengths;
+    private int[][] sourceIds;
+    // Custom reason of each record, null for the default one; a chunk is only allocated once needed
+    private String[][] reasons;
+    private boolean hasReasons;
+    private CharSequence[] sources;
+    private int sourceCount;
+    private volatile int count;
+
+    private int[] typeCounts;
+    private int maxErrors;
+    private volatile Sink sink;
+    private int scheduled;          // records already handed to the flusher
+    private volatile int flushed;   // records the sink has finished writing, by the flusher thread
+    private volatile boolean unflushed;  // in UNFLUSHED
+    private Future<?> pendingFlush;
+
     public ErrorHandler() {
-        this.errors = new ArrayList<>();
+        this(true);
+    }
+
+    /** printErrors = false only collects errors, e.g. for chunks that are merged later. */
+    public ErrorHandler(boolean printErrors) {
+        this(printErrors ? STDERR : null, DEFAULT_MAX_ERRORS);
+    }
+
+    /** sink may be null to only collect errors. */
+    public ErrorHandler(Sink sink, int maxErrors) {
+        this.types = new byte[4][];
+        this.lines = new int[4][];
+        this.columns = new int[4][];
+        this.offsets = new int[4][];
+        this.lengths = new int[4][];
+        this.sourceIds = new int[4][];
+        this.reasons = new String[4][];
+        this.sources = new CharSequence[4];
+        this.typeCounts = new int[TYPES.length];
+        this.maxErrors = maxErrors;
+        this.sink = sink;
+    }
+
+    /**
+     * Forgets every error so the handler can serve another scan; errors not
+     * yet written go to the sink first. The sink, the limit and the record
+     * arrays already allocated are kept.
+     */
+    public void clear() {
+        flush();
+        count = 0;
+        scheduled = 0;
+        flushed = 0;
+        pendingFlush = null;
+        Arrays.fill(sources, 0, sourceCount, null);
+        sourceCount = 0;
+        if (hasReasons) {
+            for (String[] chunk : reasons) if (chunk != null) Arrays.fill(chunk, null);
+            hasReasons = false;
+        }
+        Arrays.fill(typeCounts, 0);
+    }
+
+    /** Errors already recorded go to the old sink (none if it was null); later ones to the new. */
+    public void setSink(Sink sink) {
+        flush();
+        scheduled = flushed = count;
+        this.sink = sink;
     }
-    
+    public void setMaxErrors(int maxErrors) { this.maxErrors = maxErrors; }
+
+    /**
+     * Records an error whose lexeme is source[offset, offset + length).
+     * The source must stay unchanged until the error has been printed.
+     */
+    public void report(ErrorType type, int line, int column, CharSequence source, int offset, int length) {
+        typeCounts[type.ordinal()]++;
+        int index = count;
+        if (index >= maxErrors) return;
+
+        int chunk = index >>> CHUNK_SHIFT;
+        int slot = index & CHUNK_MASK;
+        if (slot == 0 && (chunk == types.length || types[chunk] == null)) addChunk(chunk);
+        types[chunk][slot] = (byte) type.ordinal();
+        lines[chunk][slot] = line;
+        columns[chunk][slot] = column;
+        offsets[chunk][slot] = offset;
+        lengths[chunk][slot] = length;
+        sourceIds[chunk][slot] = sourceId(source);
+        count = index + 1;
+        if (sink == null) return;
+
+        if (!unflushed) {
+            unflushed = true;
+            UNFLUSHED.add(this);
+        }
+        if (index + 1 - scheduled >= BATCH_SIZE && (pendingFlush == null || pendingFlush.isDone())) {
+            scheduled = index + 1;
+            pendingFlush = FLUSHER.submit(this::drain);
+        }
+    }
+
     public void reportError(ErrorType type, int line, int column, String lexeme, String reason) {
-        LexicalError error = new LexicalError(type, line, column, lexeme, reason);
-        errors.add(error);
-        System.err.println("ERROR: " + error);
+        // Stored before the record is published, so the flusher never misses it
+        int index = count;
+        if (index < maxErrors && !Objects.equals(reason, reason(type, lexeme))) {
+            setReason(index, reason != null ? reason : NULL_REASON);
+        }
+        report(type, line, column, lexeme, 0, lexeme.length());
     }
-    
+
+    /**
+     * Writes every recorded error to the sink and waits for it to finish,
+     * including a batch the flusher was already writing.
+     */
+    public void flush() {
+        if (sink != null && flushed != count) {
+            scheduled = count;
+            pendingFlush = FLUSHER.submit(this::drain);
+        }
+        if (pendingFlush == null) return;
+        try {
+            // The flusher runs tasks in order, so this one finishing means every earlier one has
+            pendingFlush.get();
+            pendingFlush = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            pendingFlush = null;
+            throw new RuntimeException("Error sink failed", e.getCause());
+        }
+    }
+
+    // On the flusher thread only
+    private void drain() {
+        int start = flushed;
+        int end = count;
+        Sink sink = this.sink;
+        if (start != end && sink != null) {
+            List<LexicalError> batch = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) batch.add(error(i));
+            try {
+                sink.write(batch);
+            } finally {
+                flushed = end;
+            }
+        }
+        if (flushed == count) {
+            unflushed = false;
+            UNFLUSHED.remove(this);
+            // A record published meanwhile may have seen the flag still set
+            if (flushed != count) {
+                unflushed = true;
+                UNFLUSHED.add(this);
+            }
+        }
+    }
+
+    private void setReason(int index, String reason) {
+        int chunk = index >>> CHUNK_SHIFT;
+        if (chunk >= reasons.length) reasons = Arrays.copyOf(reasons, Math.max(chunk + 1, reasons.length * 2));
+        if (reasons[chunk] == null) reasons[chunk] = new String[CHUNK_SIZE];
+        reasons[chunk][index & CHUNK_MASK] = reason;
+        hasReasons = true;
+    }
+
+    private String customReason(int i) {
+        if (!hasReasons) return null;
+        int chunk = i >>> CHUNK_SHIFT;
+        return chunk < reasons.length && reasons[chunk] != null ? reasons[chunk][i & CHUNK_MASK] : null;
+    }
+
+    /**
+     * Appends another handler's errors in order, shifted down by lineOffset
+     * lines. Errors the other handler only counted stay counted.
+     */
+    public void merge(ErrorHandler other, int lineOffset) {
+        int[] retained = new int[TYPES.length];
+        int otherCount = other.count;
+        for (int i = 0; i < otherCount; i++) {
+            int chunk = i >>> CHUNK_SHIFT, slot = i & CHUNK_MASK;
+            ErrorType type = TYPES[other.types[chunk][slot]];
+            retained[type.ordinal()]++;
+            String reason = other.customReason(i);
+            if (reason != null && count < maxErrors) setReason(count, reason);
+            report(type, other.lines[chunk][slot] + lineOffset, other.columns[chunk][slot],
+                    other.sources[other.sourceIds[chunk][slot]], other.offsets[chunk][slot], other.lengths[chunk][slot]);
+        }
+        for (int t = 0; t < TYPES.length; t++) typeCounts[t] += other.typeCounts[t] - retained[t];
+    }
+
     public void invalidCharacter(char c, int line, int column) {
-        reportError(ErrorType.INVALID_CHARACTER, line, column, String.valueOf(c),
-            "Character '" + c + "' is not recognized");
+        report(ErrorType.INVALID_CHARACTER, line, column, String.valueOf(c), 0, 1);
     }
-    
+
     public void invalidNumber(String lexeme, int line, int column) {
-        reportError(ErrorType.MALFORMED_NUMBER, line, column, lexeme, "Invalid number format");
+        report(ErrorType.MALFORMED_NUMBER, line, column, lexeme, 0, lexeme.length());
     }
-    
+
     public void tooManyDecimals(String lexeme, int line, int column) {
-        reportError(ErrorType.TOO_MANY_DECIMALS, line, column, lexeme,
-            "Float literal exceeds maximum of 6 decimal places");
+        report(ErrorType.TOO_MANY_DECIMALS, line, column, lexeme, 0, lexeme.length());
     }
-    
+
     public void invalidIdentifier(String lexeme, int line, int column) {
-        String reason = "Identifier must start with uppercase letter (A-Z)";
-        if (lexeme.length() > 31) {
-            reason = "Identifier exceeds maximum length of 31 characters";
+        report(ErrorType.INVALID_IDENTIFIER, line, column, lexeme, 0, lexeme.length());
+    }
+
+    /**
+     * Counts n errors of the given type without recording them, like errors
+     * past maxErrors; used when loading a saved result.
+     */
+    void countUnrecorded(ErrorType type, int n) { typeCounts[type.ordinal()] += n; }
+
+    /** The reason printed for an error that was reported without a custom one. */
+    static String reason(ErrorType type, String lexeme) {
+        switch (type) {
+            case INVALID_CHARACTER: return "Character '" + lexeme + "' is not recognized";
+            case MALFORMED_NUMBER: return "Invalid number format";
+            case TOO_MANY_DECIMALS: return "Float literal exceeds maximum of 6 decimal places";
+            case IDENTIFIER_TOO_LONG: return "Identifier exceeds maximum length of 31 characters";
+            default:
+                return lexeme.length() > 31 ? "Identifier exceeds maximum length of 31 characters"
+                                            : "Identifier must start with uppercase letter (A-Z)";
+        }
+    }
+
+    private LexicalError error(int i) {
+        int chunk = i >>> CHUNK_SHIFT, slot = i & CHUNK_MASK;
+        ErrorType type = TYPES[types[chunk][slot]];
+        int offset = offsets[chunk][slot];
+        String lexeme = sources[sourceIds[chunk][slot]].subSequence(offset, offset + lengths[chunk][slot]).toString();
+        String reason = customReason(i);
+        return new LexicalError(type, lines[chunk][slot], columns[chunk][slot], lexeme,
+                reason == null ? reason(type, lexeme) : reason == NULL_REASON ? null : reason);
+    }
+
+    // A scanner reports against the same source until it switches windows,
+    // so only the most recent source is checked.
+    private int sourceId(CharSequence source) {
+        if (sourceCount > 0 && sources[sourceCount - 1] == source) return sourceCount - 1;
+        if (sourceCount == sources.length) sources = Arrays.copyOf(sources, sourceCount * 2);
+        sources[sourceCount] = source;
+        return sourceCount++;
+    }
+
+    private void addChunk(int chunk) {
+        if (chunk == types.length) {
+            int newLength = chunk * 2;
+            types = Arrays.copyOf(types, newLength);
+            lines = Arrays.copyOf(lines, newLength);
+            columns = Arrays.copyOf(columns, newLength);
+            offsets = Arrays.copyOf(offsets, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+            sourceIds = Arrays.copyOf(sourceIds, newLength);
         }
-        reportError(ErrorType.INVALID_IDENTIFIER, line, column, lexeme, reason);
+        types[chunk] = new byte[CHUNK_SIZE];
+        lines[chunk] = new int[CHUNK_SIZE];
+        columns[chunk] = new int[CHUNK_SIZE];
+        offsets[chunk] = new int[CHUNK_SIZE];
+        lengths[chunk] = new int[CHUNK_SIZE];
+        sourceIds[chunk] = new int[CHUNK_SIZE];
+    }
+
+    // Where the lexeme of recorded error i lives, so a writer can refer to it instead of copying it
+    CharSequence getSource(int i) { return sources[sourceIds[i >>> CHUNK_SHIFT][i & CHUNK_MASK]]; }
+    int getOffset(int i) { return offsets[i >>> CHUNK_SHIFT][i & CHUNK_MASK]; }
+
+    /** Total errors reported, including those past maxErrors that were only counted. */
+    public int getErrorCount() {
+        int total = 0;
+        for (int n : typeCounts) total += n;
+        return total;
     }
-    
-    public boolean hasErrors() { return !errors.isEmpty(); }
-    public int getErrorCount() { return errors.size(); }
-    public List<LexicalError> getErrors() { return new ArrayList<>(errors); }
-    
+    public int getErrorCount(ErrorType type) { return typeCounts[type.ordinal()]; }
+    public int getDroppedCount() { return getErrorCount() - count; }
+    public boolean hasErrors() { return getErrorCount() > 0; }
+
+    /** The recorded errors (at most maxErrors), materialized in report order. */
+    public List<LexicalError> getErrors() {
+        List<LexicalError> errors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) errors.add(error(i));
+        return errors;
+    }
+
     public void printSummary() {
+        flush();
         System.out.println("\n" + "=".repeat(60));
         System.out.println("ERROR SUMMARY");
         System.out.println("=".repeat(60));
-        System.out.println("Total errors found: " + errors.size());
+        System.out.println("Total errors found: " + getErrorCount());
         System.out.println("-".repeat(60));
-        for (int i = 0; i < errors.size(); i++) {
-            System.out.printf("%3d. %s%n", i + 1, errors.get(i));
+        for (int i = 0; i < count; i++) {
+            System.out.printf("%3d. %s%n", i + 1, error(i));
+        }
+        if (getDroppedCount() > 0) {
+            System.out.println("... " + getDroppedCount() + " more errors not recorded (limit " + maxErrors + ")");
+            for (ErrorType type : TYPES) {
+                if (typeCounts[type.ordinal()] > 0) {
+                    System.out.printf("     %-25s %d%n", type.getDescription() + ":", typeCounts[type.ordinal()]);
+                }
+            }
         }
         System.out.println("=".repeat(60));
     }
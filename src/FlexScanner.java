@@ -0,0 +1,385 @@
+// DO NOT EDIT
+// Generated by ScannerGenerator from Scanner.flex: 20 rules, 28 character classes, 66 DFA states
+
+/**
+ * FlexScanner - Table-driven scanner generated from Scanner.flex
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Generated by ScannerGenerator (java ScannerGenerator Scanner.flex); edit
+ * Scanner.flex, not FlexScanner.java. Recognizes the same language as
+ * ManualScanner, lexical errors included, which ScannerComparison checks.
+ *
+ * Supports: Int lit, Float lit, Identifier, Single-line comment,
+ * Boolean, Punctuation, Whitespace
+ */
+public class FlexScanner {
+
+    /** Returned by zzRefill()/used as zzInput at end of input. */
+    private static final int YYEOF = -1;
+    private static final int ZZ_BUFFERSIZE = 16384;
+
+    /** Character class of every char, run-length encoded as (count, value) pairs. */
+    private static final char[] ZZ_CMAP = zzUnpackCMap(
+        "\011\000\001\001\001\002\002\000\001\001\022\000\001\001\002\000" +
+        "\001\003\004\000\001\004\001\005\001\000\001\006\001\007\001\006" +
+        "\001\010\001\000\012\011\001\012\001\013\005\000\004\014\001\015" +
+        "\025\014\001\016\001\000\001\017\001\000\001\020\001\000\001\021" +
+        "\003\022\001\023\001\024\005\022\001\025\005\022\001\026\001\027" +
+        "\001\030\001\031\005\022\001\032\001\000\001\033\uff82\000");
+
+    /** Offset of each state's row in ZZ_TRANS; identical rows are shared. */
+    private static final int[] ZZ_ROWMAP = zzUnpack(66, 0,
+        "\001\000\001\034\0018\001T\003\034\001p\002\034\001\214\002\034\001" +
+        "\250\001\304\001\340\002\034\001\374\001\u0118\001\u0134\001\u0150" +
+        "\001\u016c\001\u0188\001\u01a4\002\u01c0\001\u01dc\001\u01f8\001" +
+        "\u0214\001\u0230\001\u024c\001\250\001\u0268\001\u0284\001\u02a0" +
+        "\001\u02bc\001\u02d8\001\u02f4\001\u0310\001\u032c\001\u0348\001" +
+        "\u0364\001\u0380\001\u039c\001\u03b8\001\u03d4\001\u03f0\001\u040c" +
+        "\001\u0428\001\u0444\001\u0460\001\u047c\001\u0498\001\u04b4\001" +
+        "\u04d0\001\u04ec\001\u0508\001\u0524\001\u0540\001\u055c\001\u0578" +
+        "\001\u0594\001\u05b0\002\u05cc");
+
+    /** Next state for row + character class, -1 if none. */
+    private static final int[] ZZ_TRANS = zzUnpack(1512, 1,
+        "\001\002\002\003\001\004\001\005\001\006\001\002\001\007\001\002" +
+        "\001\010\001\011\001\012\002\013\001\014\001\015\001\002\003\016" +
+        "\001\017\003\016\001\020\001\016\001\021\001\022\035\000\002\003" +
+        "\034\000\001\023 \000\001\024\001\010\003\000\001\025\005\000\001" +
+        "\025\021\000\001\026\006\000\012\026\023\000\011\016\023\000\001" +
+        "\027\010\016\023\000\005\016\001\030\003\016\002\000\002\023\001" +
+        "\000\031\023\011\000\001\031\030\000\001\032\002\000\001\033\033" +
+        "\000\001\034\006\000\012\034\023\000\004\016\001\035\004\016\023" +
+        "\000\010\016\001\036\013\000\001\037\003\000\001\025\005\000\001" +
+        "\025\021\000\001\033\033\000\001 \006\000\012 \023\000\006\016\001" +
+        "\036\002\016\023\000\002\016\001!\006\016\013\000\001\042\003\000" +
+        "\001\025\005\000\001\025\021\000\001#\006\000\012#\013\000\001$\003" +
+        "\000\001\025\005\000\001\025\021\000\001%\006\000\012%\013\000\001" +
+        "&\003\000\001\025\005\000\001\025\021\000\001'\006\000\012'\013\000" +
+        "\001(\003\000\001\025\005\000\001\025\021\000\001)\006\000\012)\013" +
+        "\000\001*\003\000\001\025\005\000\001\025\021\000\001+\006\000\012" +
+        "+\013\000\001*\033\000\001,\006\000\012,\013\000\001-\006\000\012" +
+        "-\013\000\001.\006\000\012.\013\000\001/\006\000\012/\013\000\001" +
+        "0\006\000\0120\013\000\0011\006\000\0121\013\000\0012\006\000\012" +
+        "2\013\000\0013\006\000\0123\013\000\0014\006\000\0124\013\000\001" +
+        "5\006\000\0125\013\000\0016\006\000\0126\013\000\0017\006\000\012" +
+        "7\013\000\0018\006\000\0128\013\000\0019\006\000\0129\013\000\001" +
+        ":\006\000\012:\013\000\001;\006\000\012;\013\000\001<\006\000\012" +
+        "<\013\000\001=\006\000\012=\013\000\001>\006\000\012>\013\000\001" +
+        "?\006\000\012?\013\000\001@\006\000\012@\013\000\001A\006\000\012" +
+        "A\013\000\001B\006\000\012B\002\000");
+
+    /** Per state: 1 = accepting, 8 = no outgoing transitions. */
+    private static final int[] ZZ_ATTRIBUTE = zzUnpack(66, 0,
+        "\001\000\001\011\002\001\003\011\001\001\002\011\001\001\002\011" +
+        "\003\001\002\011\001\001\001\000.\001");
+
+    /** Action (rule number + 1) of each accepting state. */
+    private static final int[] ZZ_ACTION = zzUnpack(66, 0,
+        "\001\000\001\024\001\001\001\024\001\007\001\010\001\015\001\005" +
+        "\001\017\001\016\001\006\001\013\001\014\003\023\001\011\001\012" +
+        "\001\002\001\000\001\021\001\006\002\023\001\004\001\021\001\004" +
+        "\001\006\002\023\001\004\001\006\001\003\001\004\001\006\001\004" +
+        "\001\006\001\004\001\006\001\004\001\006\001\020\027\006\001\022");
+
+    private java.io.Reader zzReader;
+    private char[] zzBuffer = new char[ZZ_BUFFERSIZE];
+    private int zzStartRead;
+    private int zzMarkedPos;
+    private int zzCurrentPos;
+    private int zzEndRead;
+    private boolean zzAtEOF;
+    private int yyline;
+    private int yycolumn;
+
+    // ─── Code from Scanner.flex ───
+
+    private SymbolTable symbolTable = new SymbolTable();
+    private ErrorHandler errorHandler = new ErrorHandler();
+    private int commentCount = 0;
+    private int symbolId = -1;
+    private java.nio.CharBuffer bufferView;
+
+    public FlexScanner(String source) { this(new java.io.StringReader(source)); }
+
+    public SymbolTable getSymbolTable() { return symbolTable; }
+    public ErrorHandler getErrorHandler() { return errorHandler; }
+    public int getCommentCount() { return commentCount; }
+
+    /** The buffer as a CharSequence, so identifiers are hashed without copying them. */
+    private CharSequence buffer() {
+        if (bufferView == null || bufferView.array() != zzBuffer) bufferView = java.nio.CharBuffer.wrap(zzBuffer);
+        return bufferView;
+    }
+
+    /** Returns the next token, like Yylex.yylex(). */
+    public Token nextToken() throws java.io.IOException {
+        TokenType type = yylex();
+        return new Token(type, yytext(), yyline + 1, yycolumn + 1, type == TokenType.IDENTIFIER ? symbolId : -1);
+    }
+
+    public TokenStream scanAll() throws java.io.IOException {
+        TokenStream tokens = new TokenStream();
+        TokenType type;
+        do {
+            type = yylex();
+            tokens.add(type, zzBuffer, zzStartRead, yylength(), yyline + 1, yycolumn + 1,
+                       type == TokenType.IDENTIFIER ? symbolId : -1);
+        } while (type != TokenType.EOF);
+        return tokens;
+    }
+
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java FlexScanner <file.pooh>");
+            return;
+        }
+        FlexScanner scanner = new FlexScanner(java.nio.file.Files.newBufferedReader(java.nio.file.Paths.get(args[0])));
+        for (Token token : scanner.scanAll()) System.out.println(token);
+        System.out.println("\nComments removed: " + scanner.getCommentCount());
+        scanner.getSymbolTable().printTable();
+        if (scanner.getErrorHandler().hasErrors()) scanner.getErrorHandler().printSummary();
+    }
+
+    // ─── Generated scanner ───
+
+    public FlexScanner(java.io.Reader in) {
+        this.zzReader = in;
+    }
+
+    private static char[] zzUnpackCMap(String packed) {
+        char[] map = new char[0x10000];
+        for (int i = 0, j = 0; i < packed.length(); ) {
+            int count = packed.charAt(i++);
+            char value = packed.charAt(i++);
+            do map[j++] = value; while (--count > 0);
+        }
+        return map;
+    }
+
+    private static int[] zzUnpack(int size, int offset, String packed) {
+        int[] result = new int[size];
+        for (int i = 0, j = 0; i < packed.length(); ) {
+            int count = packed.charAt(i++);
+            int value = packed.charAt(i++) - offset;
+            do result[j++] = value; while (--count > 0);
+        }
+        return result;
+    }
+
+    /**
+     * Moves the current match to the front of the buffer, growing it if the
+     * match fills it, and reads more input; returns true at end of input.
+     */
+    private boolean zzRefill() throws java.io.IOException {
+        if (zzStartRead > 0) {
+            System.arraycopy(zzBuffer, zzStartRead, zzBuffer, 0, zzEndRead - zzStartRead);
+            zzEndRead -= zzStartRead;
+            zzCurrentPos -= zzStartRead;
+            zzMarkedPos -= zzStartRead;
+            zzStartRead = 0;
+        }
+        if (zzEndRead == zzBuffer.length) zzBuffer = java.util.Arrays.copyOf(zzBuffer, zzBuffer.length * 2);
+        int numRead;
+        do {
+            numRead = zzReader.read(zzBuffer, zzEndRead, zzBuffer.length - zzEndRead);
+        } while (numRead == 0);
+        if (numRead < 0) return true;
+        zzEndRead += numRead;
+        return false;
+    }
+
+    public final String yytext() { return new String(zzBuffer, zzStartRead, zzMarkedPos - zzStartRead); }
+    public final int yylength() { return zzMarkedPos - zzStartRead; }
+    public final char yycharat(int pos) { return zzBuffer[zzStartRead + pos]; }
+
+    /** Matches the longest prefix of the remaining input and runs its rule's action. */
+    @SuppressWarnings("fallthrough")
+    public TokenType yylex() throws java.io.IOException {
+        char[] zzCMapL = ZZ_CMAP;
+        int[] zzTransL = ZZ_TRANS;
+        int[] zzRowMapL = ZZ_ROWMAP;
+        int[] zzAttrL = ZZ_ATTRIBUTE;
+
+        while (true) {
+            int zzMarkedPosL = zzMarkedPos;
+            for (int i = zzStartRead; i < zzMarkedPosL; i++) {
+                if (zzBuffer[i] == '\n') {
+                    yyline++;
+                    yycolumn = 0;
+                } else {
+                    yycolumn++;
+                }
+            }
+            int zzAction = -1;
+            int zzCurrentPosL = zzCurrentPos = zzStartRead = zzMarkedPosL;
+            int zzState = 0;
+            int zzInput;
+            char[] zzBufferL = zzBuffer;
+            int zzEndReadL = zzEndRead;
+
+            zzForAction: {
+                while (true) {
+                    if (zzCurrentPosL < zzEndReadL) {
+                        zzInput = zzBufferL[zzCurrentPosL++];
+                    } else if (zzAtEOF) {
+                        zzInput = YYEOF;
+                        break zzForAction;
+                    } else {
+                        zzCurrentPos = zzCurrentPosL;
+                        zzMarkedPos = zzMarkedPosL;
+                        boolean eof = zzRefill();
+                        zzCurrentPosL = zzCurrentPos;
+                        zzMarkedPosL = zzMarkedPos;
+                        zzBufferL = zzBuffer;
+                        zzEndReadL = zzEndRead;
+                        if (eof) {
+                            zzInput = YYEOF;
+                            break zzForAction;
+                        }
+                        zzInput = zzBufferL[zzCurrentPosL++];
+                    }
+                    int zzNext = zzTransL[zzRowMapL[zzState] + zzCMapL[zzInput]];
+                    if (zzNext == -1) break zzForAction;
+                    zzState = zzNext;
+                    int zzAttributes = zzAttrL[zzState];
+                    if ((zzAttributes & 1) == 1) {
+                        zzAction = zzState;
+                        zzMarkedPosL = zzCurrentPosL;
+                        if ((zzAttributes & 8) == 8) break zzForAction;
+                    }
+                }
+            }
+            zzMarkedPos = zzMarkedPosL;
+
+            if (zzInput == YYEOF && zzStartRead == zzCurrentPos) {
+                zzAtEOF = true;
+                {
+                    errorHandler.flush();
+                    return TokenType.EOF;
+                }
+            }
+            switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {
+                case 1: // {WhiteSpace}
+                    { /* skip */ }
+                    // fall through
+                case 21:
+                    break;
+                case 2: // {SingleLineComment}
+                    { commentCount++; }
+                    // fall through
+                case 22:
+                    break;
+                case 3: // {BooleanLiteral}
+                    { return TokenType.BOOLEAN_LIT; }
+                    // fall through
+                case 23:
+                    break;
+                case 4: // {FloatLiteral}
+                    { return TokenType.FLOAT_LIT; }
+                    // fall through
+                case 24:
+                    break;
+                case 5: // {IntLiteral}
+                    { return TokenType.INT_LIT; }
+                    // fall through
+                case 25:
+                    break;
+                case 6: // {Identifier}
+                    {
+                        symbolId = symbolTable.addSymbol(buffer(), zzStartRead, zzMarkedPos, null, yyline + 1, yycolumn + 1);
+                        return TokenType.IDENTIFIER;
+                    }
+                    // fall through
+                case 26:
+                    break;
+                case 7: // "("
+                    { return TokenType.LPAREN; }
+                    // fall through
+                case 27:
+                    break;
+                case 8: // ")"
+                    { return TokenType.RPAREN; }
+                    // fall through
+                case 28:
+                    break;
+                case 9: // "{"
+                    { return TokenType.LBRACE; }
+                    // fall through
+                case 29:
+                    break;
+                case 10: // "}"
+                    { return TokenType.RBRACE; }
+                    // fall through
+                case 30:
+                    break;
+                case 11: // "["
+                    { return TokenType.LBRACKET; }
+                    // fall through
+                case 31:
+                    break;
+                case 12: // "]"
+                    { return TokenType.RBRACKET; }
+                    // fall through
+                case 32:
+                    break;
+                case 13: // ","
+                    { return TokenType.COMMA; }
+                    // fall through
+                case 33:
+                    break;
+                case 14: // ";"
+                    { return TokenType.SEMICOLON; }
+                    // fall through
+                case 34:
+                    break;
+                case 15: // ":"
+                    { return TokenType.COLON; }
+                    // fall through
+                case 35:
+                    break;
+                case 16: // {TooManyDecimals}
+                    {
+                        errorHandler.tooManyDecimals(yytext(), yyline + 1, yycolumn + 1);
+                        return TokenType.ERROR;
+                    }
+                    // fall through
+                case 36:
+                    break;
+                case 17: // {MalformedNumber}
+                    {
+                        errorHandler.invalidNumber(yytext(), yyline + 1, yycolumn + 1);
+                        return TokenType.ERROR;
+                    }
+                    // fall through
+                case 37:
+                    break;
+                case 18: // {LongIdentifier}
+                    {
+                        errorHandler.invalidIdentifier(yytext(), yyline + 1, yycolumn + 1);
+                        return TokenType.ERROR;
+                    }
+                    // fall through
+                case 38:
+                    break;
+                case 19: // {InvalidIdentifier}
+                    {
+                        errorHandler.invalidIdentifier(yytext(), yyline + 1, yycolumn + 1);
+                        return TokenType.ERROR;
+                    }
+                    // fall through
+                case 39:
+                    break;
+                case 20: // .
+                    {
+                        errorHandler.invalidCharacter(yycharat(0), yyline + 1, yycolumn + 1);
+                        return TokenType.ERROR;
+                    }
+                    // fall through
+                case 40:
+                    break;
+                default:
+                    throw new IllegalStateException("No rule matches input at line " + (yyline + 1) + ", column " + (yycolumn + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,472 @@
+import java.util.*;
+
+/**
+ * IncrementalScanner - Re-lexes only the lines touched by a text edit
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * No Pooh token spans a line, so the document is kept as a list of lines,
+ * each with its own tokens and errors at line-relative columns. An edit
+ * (offset, removedLength, insertedText) replaces the touched lines with
+ * newly scanned ones; later lines are not rescanned and their positions
+ * shift implicitly. Line start offsets and indices are recomputed lazily
+ * from the first line after an edit, only as far as a lookup needs.
+ *
+ * Identifier frequencies, error and token counts are updated with the
+ * edit, and so is the list of symbols ordered by first occurrence, whose
+ * index is the symbol ID a full scan assigns. A symbol whose first
+ * occurrence is edited away is looked up again from the edit onwards.
+ *
+ * Reading back is meant to cost as little as the edit: getLineText,
+ * getTokens(firstLine, lastLine), getErrorHandler(firstLine, lastLine) and
+ * the getSymbolNames view only touch the lines and symbols asked for (plus
+ * line indices up to them). getText(), getTokens(), getSymbolTable() and
+ * getErrorHandler() build the same results as a full ManualScanner scan of
+ * getText(), at the cost of one.
+ */
+public class IncrementalScanner {
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final ErrorHandler.ErrorType[] ERROR_TYPES = ErrorHandler.ErrorType.values();
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final int[] NO_INTS = new int[0];
+    private static final Symbol[] NO_SYMBOLS = new Symbol[0];
+    // Edited text longer than this is scanned by a scanner of its own, not lineScanner
+    private static final int MAX_REUSED_SCAN = 1 << 16;
+
+    private static final class Symbol {
+        final String name;
+        int frequency;
+        Line firstLine;                    // null while an edit looks for the new first occurrence
+        int firstColumn;
+        boolean moving;                    // out of ordered until the edit puts it back
+
+        Symbol(String name) { this.name = name; }
+    }
+
+    /** One line of text without its newline, with its tokens (excluding EOF) and errors. */
+    private static final class Line {
+        final String text;
+        byte[] types = NO_BYTES;
+        int[] columns = NO_INTS;
+        int[] lengths = NO_INTS;
+        Symbol[] symbols = NO_SYMBOLS;     // per token, set for identifiers
+        byte[] errorTypes = NO_BYTES;
+        int[] errorColumns = NO_INTS;
+        int[] errorLengths = NO_INTS;
+        int index;                         // valid below validLines
+        int start;                         // offset of the first char, valid below validLines
+
+        Line(String text) { this.text = text; }
+    }
+
+    private final List<Line> lines;
+    private final Map<String, Symbol> symbols;
+    // Every symbol by first occurrence: a symbol's ID is its index here
+    private final List<Symbol> ordered;
+    // Symbols whose first occurrence the current edit moves or creates
+    private final List<Symbol> moving;
+    private final List<String> symbolNames;
+    private int validLines;
+    private int editStart;             // first replaced line while an edit registers new lines
+    private int length;
+    private int tokenCount;
+    private int errorCount;
+    private int commentCount;
+    // Quiet scanner reused for the lines of each edit; never shared, so its settings stay its own
+    private final ManualScanner lineScanner = new ManualScanner("", new ErrorHandler(false));
+
+    public IncrementalScanner(String text) {
+        this.lines = new ArrayList<>();
+        this.symbols = new HashMap<>();
+        this.ordered = new ArrayList<>();
+        this.moving = new ArrayList<>();
+        this.symbolNames = new AbstractList<String>() {
+            @Override
+            public String get(int id) { return ordered.get(id).name; }
+
+            @Override
+            public int size() { return ordered.size(); }
+        };
+        this.lines.addAll(scanLines(text));
+        this.editStart = Integer.MAX_VALUE;
+        // Lines are registered in document order, so new symbols arrive in ID order
+        for (Line line : lines) register(line);
+        for (Symbol symbol : moving) symbol.moving = false;
+        ordered.addAll(moving);
+        moving.clear();
+        this.length = text.length();
+        this.validLines = 0;
+    }
+
+    /**
+     * Replaces text[offset, offset + removedLength) with insertedText and
+     * re-lexes the lines it touches.
+     */
+    public void edit(int offset, int removedLength, String insertedText) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > length) {
+            throw new IndexOutOfBoundsException("edit [" + offset + ", " + (offset + removedLength)
+                    + ") outside document of length " + length);
+        }
+        int first = lineAt(offset);
+        int last = lineAt(offset + removedLength);
+        Line firstLine = lines.get(first);
+        Line lastLine = lines.get(last);
+        String text = firstLine.text.substring(0, offset - firstLine.start) + insertedText
+                + lastLine.text.substring(offset + removedLength - lastLine.start);
+
+        List<Line> replaced = lines.subList(first, last + 1);
+        // Symbols first seen in the replaced lines leave the order while their positions are still known
+        for (Line line : replaced) {
+            for (Symbol symbol : line.symbols) {
+                if (symbol != null && symbol.firstLine == line && !symbol.moving) {
+                    ordered.remove(lowerBound(line.index, symbol.firstColumn));
+                    symbol.moving = true;
+                    symbol.firstLine = null;
+                    moving.add(symbol);
+                }
+            }
+        }
+        for (Line line : replaced) unregister(line);
+        List<Line> scanned = scanLines(text);
+        // Overwrite in place so the tail of the list only moves when the line count changes
+        int common = Math.min(replaced.size(), scanned.size());
+        for (int i = 0; i < common; i++) replaced.set(i, scanned.get(i));
+        if (replaced.size() > common) replaced.subList(common, replaced.size()).clear();
+        else replaced.addAll(scanned.subList(common, scanned.size()));
+
+        int start = firstLine.start;
+        for (int i = 0; i < scanned.size(); i++) {
+            Line line = scanned.get(i);
+            line.index = first + i;
+            line.start = start;
+            start += line.text.length() + 1;
+        }
+        validLines = first + scanned.size();
+        editStart = first;
+        for (Line line : scanned) register(line);
+        editStart = Integer.MAX_VALUE;
+        length += insertedText.length() - removedLength;
+        placeMovingSymbols();
+    }
+
+    // ─── Scanning and bookkeeping ────────────────────────────────────────────
+
+    /** Scans text (which may contain newlines) into lines; tokens never span one. */
+    private List<Line> scanLines(String text) {
+        List<Line> result = new ArrayList<>();
+        for (int start = 0, end; ; start = end + 1) {
+            end = text.indexOf('\n', start);
+            result.add(new Line(text.substring(start, end < 0 ? text.length() : end)));
+            if (end < 0) break;
+        }
+
+        // A keystroke reuses lineScanner rather than allocating a scanner's worth of arrays
+        ManualScanner scanner = text.length() <= MAX_REUSED_SCAN ? lineScanner.reset(text)
+                : new ManualScanner(text, new ErrorHandler(false));
+        TokenStream tokens = scanner.scan();
+        int count = tokens.size() - 1;     // without EOF
+        for (int i = 0; i < count; ) {
+            int lineNumber = tokens.getLine(i);
+            int end = i;
+            while (end < count && tokens.getLine(end) == lineNumber) end++;
+            Line line = result.get(lineNumber - 1);
+            int n = end - i;
+            line.types = new byte[n];
+            line.columns = new int[n];
+            line.lengths = new int[n];
+            line.symbols = new Symbol[n];
+            for (int t = 0; t < n; t++) {
+                line.types[t] = (byte) tokens.getType(i + t).ordinal();
+                line.columns[t] = tokens.getColumn(i + t);
+                line.lengths[t] = tokens.getLength(i + t);
+            }
+            i = end;
+        }
+
+        List<ErrorHandler.LexicalError> errors = scanner.getErrorHandler().getErrors();
+        for (int i = 0; i < errors.size(); ) {
+            int lineNumber = errors.get(i).getLine();
+            int end = i;
+            while (end < errors.size() && errors.get(end).getLine() == lineNumber) end++;
+            Line line = result.get(lineNumber - 1);
+            int n = end - i;
+            line.errorTypes = new byte[n];
+            line.errorColumns = new int[n];
+            line.errorLengths = new int[n];
+            for (int e = 0; e < n; e++) {
+                ErrorHandler.LexicalError error = errors.get(i + e);
+                line.errorTypes[e] = (byte) error.getType().ordinal();
+                line.errorColumns[e] = error.getColumn();
+                line.errorLengths[e] = error.getLexeme().length();
+            }
+            i = end;
+        }
+        return result;
+    }
+
+    /**
+     * Adds a newly scanned line's identifiers and counts. A symbol seen for
+     * the first time, or whose first occurrence was after the edit, now
+     * starts here and is moved to its new place by placeMovingSymbols.
+     */
+    private void register(Line line) {
+        tokenCount += line.types.length;
+        errorCount += line.errorTypes.length;
+        for (int t = 0; t < line.types.length; t++) {
+            TokenType type = TYPES[line.types[t]];
+            if (type == TokenType.SINGLE_LINE_COMMENT) {
+                commentCount++;
+            } else if (type == TokenType.IDENTIFIER) {
+                int column = line.columns[t];
+                String name = line.text.substring(column - 1, column - 1 + line.lengths[t]);
+                Symbol symbol = symbols.get(name);
+                if (symbol == null) {
+                    symbol = new Symbol(name);
+                    symbols.put(name, symbol);
+                    symbol.moving = true;
+                    moving.add(symbol);
+                } else if (!symbol.moving && editStart != Integer.MAX_VALUE && lineIndex(symbol.firstLine) >= editStart) {
+                    // Lines before the edit have no occurrence, so this one is now the first
+                    int i = lowerBound(editStart, 0);
+                    while (ordered.get(i) != symbol) i++;
+                    ordered.remove(i);
+                    symbol.moving = true;
+                    symbol.firstLine = null;
+                    moving.add(symbol);
+                }
+                if (symbol.firstLine == null) {
+                    symbol.firstLine = line;
+                    symbol.firstColumn = column;
+                }
+                symbol.frequency++;
+                line.symbols[t] = symbol;
+            }
+        }
+    }
+
+    private void unregister(Line line) {
+        tokenCount -= line.types.length;
+        errorCount -= line.errorTypes.length;
+        for (int t = 0; t < line.types.length; t++) {
+            TokenType type = TYPES[line.types[t]];
+            if (type == TokenType.SINGLE_LINE_COMMENT) {
+                commentCount--;
+            } else if (type == TokenType.IDENTIFIER) {
+                Symbol symbol = line.symbols[t];
+                if (--symbol.frequency == 0) symbols.remove(symbol.name);
+            }
+        }
+    }
+
+    /**
+     * Finds the first occurrence of moving symbols that lost theirs without
+     * gaining one in the new lines, searching onwards from the edit, then
+     * puts every moving symbol back into the order.
+     */
+    private void placeMovingSymbols() {
+        int unresolved = 0;
+        for (Symbol symbol : moving) {
+            if (symbol.frequency > 0 && symbol.firstLine == null) unresolved++;
+        }
+        while (unresolved > 0) {
+            Line line = validateNext();
+            for (int t = 0; t < line.types.length && unresolved > 0; t++) {
+                Symbol symbol = line.symbols[t];
+                if (symbol != null && symbol.firstLine == null) {
+                    symbol.firstLine = line;
+                    symbol.firstColumn = line.columns[t];
+                    unresolved--;
+                }
+            }
+        }
+        for (Symbol symbol : moving) {
+            symbol.moving = false;
+            if (symbol.frequency > 0) ordered.add(lowerBound(lineIndex(symbol.firstLine), symbol.firstColumn), symbol);
+        }
+        moving.clear();
+    }
+
+    /**
+     * Index of line, or Integer.MAX_VALUE if it is past the lines whose
+     * index is known; symbols are placed only after their line is indexed.
+     */
+    private int lineIndex(Line line) {
+        return line.index < validLines && lines.get(line.index) == line ? line.index : Integer.MAX_VALUE;
+    }
+
+    /** Position in ordered of the first symbol whose first occurrence is not before (lineIndex, column). */
+    private int lowerBound(int lineIndex, int column) {
+        int low = 0, high = ordered.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Symbol symbol = ordered.get(mid);
+            int index = lineIndex(symbol.firstLine);
+            if (index < lineIndex || (index == lineIndex && symbol.firstColumn < column)) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /** The symbol ID a full scan would give symbol. */
+    private int symbolId(Symbol symbol) {
+        while (lineIndex(symbol.firstLine) == Integer.MAX_VALUE) validateNext();
+        return lowerBound(symbol.firstLine.index, symbol.firstColumn);
+    }
+
+    /** Index of the line containing offset; the offset of a newline belongs to the line it ends. */
+    private int lineAt(int offset) {
+        if (validLines == 0) validateNext();
+        Line last = lines.get(validLines - 1);
+        while (offset > last.start + last.text.length() && validLines < lines.size()) last = validateNext();
+        int low = 0, high = validLines - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lines.get(mid).start <= offset) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    /** Computes the index and start of the first line not yet indexed. */
+    private Line validateNext() {
+        Line next = lines.get(validLines);
+        if (validLines == 0) {
+            next.start = 0;
+        } else {
+            Line previous = lines.get(validLines - 1);
+            next.start = previous.start + previous.text.length() + 1;
+        }
+        next.index = validLines++;
+        return next;
+    }
+
+    private void validateAll() {
+        while (validLines < lines.size()) validateNext();
+    }
+
+    private void checkLines(int firstLine, int lastLine) {
+        if (firstLine < 1 || lastLine < firstLine - 1 || lastLine > lines.size()) {
+            throw new IndexOutOfBoundsException("lines " + firstLine + " to " + lastLine + " of " + lines.size());
+        }
+    }
+
+    // ─── Results ─────────────────────────────────────────────────────────────
+
+    public int getLength() { return length; }
+    public int getLineCount() { return lines.size(); }
+    /** Tokens a full scan would return, excluding EOF. */
+    public int getTokenCount() { return tokenCount; }
+    public int getErrorCount() { return errorCount; }
+    public int getCommentCount() { return commentCount; }
+    public int getSymbolCount() { return symbols.size(); }
+
+    /** Text of a line (1-based) without its newline. */
+    public String getLineText(int line) {
+        checkLines(line, line);
+        return lines.get(line - 1).text;
+    }
+
+    /**
+     * Symbol names by symbol ID, as a full scan would number them. A live
+     * read-only view: it follows later edits and costs nothing to get.
+     */
+    public List<String> getSymbolNames() { return symbolNames; }
+
+    /** Symbol ID of name, or -1 if it does not occur. */
+    public int getSymbolId(String name) {
+        Symbol symbol = symbols.get(name);
+        return symbol != null ? symbolId(symbol) : -1;
+    }
+
+    public int getSymbolFrequency(int id) { return ordered.get(id).frequency; }
+
+    public String getText() {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) text.append('\n');
+            text.append(lines.get(i).text);
+        }
+        return text.toString();
+    }
+
+    /** The symbol table of the current text, ordered by first occurrence. */
+    public SymbolTable getSymbolTable() {
+        validateAll();
+        SymbolTable table = new SymbolTable();
+        for (Symbol symbol : ordered) {
+            table.addEntry(symbol.name, null, symbol.firstLine.index + 1, symbol.firstColumn, symbol.frequency);
+        }
+        return table;
+    }
+
+    /** A non-printing ErrorHandler holding the current errors in document order. */
+    public ErrorHandler getErrorHandler() {
+        return getErrorHandler(1, lines.size());
+    }
+
+    /** The errors on lines firstLine to lastLine (1-based, inclusive), at their document positions. */
+    public ErrorHandler getErrorHandler(int firstLine, int lastLine) {
+        checkLines(firstLine, lastLine);
+        ErrorHandler handler = new ErrorHandler(false);
+        for (int i = firstLine - 1; i < lastLine; i++) {
+            Line line = lines.get(i);
+            for (int e = 0; e < line.errorTypes.length; e++) {
+                int column = line.errorColumns[e];
+                handler.report(ERROR_TYPES[line.errorTypes[e]], i + 1, column, line.text, column - 1, line.errorLengths[e]);
+            }
+        }
+        return handler;
+    }
+
+    /** The token stream of the current text, identical to ManualScanner's, symbol IDs included. */
+    public TokenStream getTokens() {
+        validateAll();
+        TokenStream tokens = getTokens(1, lines.size());
+        int[] eof = eofPosition();
+        tokens.add(TokenType.EOF, length, 0, eof[0], eof[1]);
+        return tokens;
+    }
+
+    /**
+     * The tokens on lines firstLine to lastLine (1-based, inclusive) as a
+     * full scan gives them, symbol IDs included, but without EOF. Token
+     * offsets index into the text of those lines joined by newlines, which
+     * is the stream's source.
+     */
+    public TokenStream getTokens(int firstLine, int lastLine) {
+        checkLines(firstLine, lastLine);
+        StringBuilder text = new StringBuilder();
+        TokenStream tokens = new TokenStream(text);
+        for (int i = firstLine - 1; i < lastLine; i++) {
+            Line line = lines.get(i);
+            if (i >= firstLine) text.append('\n');
+            int start = text.length();
+            text.append(line.text);
+            for (int t = 0; t < line.types.length; t++) {
+                Symbol symbol = line.symbols[t];
+                tokens.add(TYPES[line.types[t]], start + line.columns[t] - 1, line.lengths[t], i + 1,
+                        line.columns[t], symbol != null ? symbolId(symbol) : -1);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * ManualScanner gives EOF the position of the last scanned unit: the last
+     * token or comment, or the last whitespace or newline character after it;
+     * (0, 0) when empty.
+     */
+    private int[] eofPosition() {
+        int lastIndex = lines.size() - 1;
+        Line last = lines.get(lastIndex);
+        if (last.text.isEmpty()) {
+            if (lastIndex == 0) return new int[] {0, 0};
+            return new int[] {lastIndex, lines.get(lastIndex - 1).text.length() + 1};
+        }
+        int tokens = last.types.length;
+        boolean comment = tokens > 0 && TYPES[last.types[tokens - 1]] == TokenType.SINGLE_LINE_COMMENT;
+        char c = last.text.charAt(last.text.length() - 1);
+        if (!comment && (c == ' ' || c == '\t' || c == '\r')) return new int[] {lastIndex + 1, last.text.length()};
+        return new int[] {lastIndex + 1, last.columns[tokens - 1]};
+    }
+}
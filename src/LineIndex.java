@@ -0,0 +1,53 @@
+import java.util.Arrays;
+
+/**
+ * LineIndex - Maps source offsets to line and column numbers
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Holds the offset at which each line of a scanned region starts, found in
+ * one pass over the newlines, so positions can be kept as plain offsets and
+ * turned into line/column pairs only when asked for, by binary search.
+ * Lines and columns are 1-based as in Token; the first line starts at the
+ * line and column the region was scanned from, so a region of a larger
+ * document resolves to document positions.
+ *
+ * A ManualScanner refills the same line-start array for its next input, so
+ * an index it built, like the token stream resolving through it, is only
+ * valid until that scanner is reset or released to a ScannerPool; after
+ * that it reports the next input's positions.
+ */
+public class LineIndex {
+
+    private final int[] lineStarts;
+    private final int lineCount;
+    private final int firstLine;
+    private final int firstColumn;
+
+    /** Index whose line firstLine starts at lineStarts[0], in column firstColumn. */
+    LineIndex(int[] lineStarts, int lineCount, int firstLine, int firstColumn) {
+        if (lineCount < 1) throw new IllegalArgumentException("An index has at least one line");
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+        this.firstLine = firstLine;
+        this.firstColumn = firstColumn;
+    }
+
+    /** Line containing offset; offsets before the region belong to its first line. */
+    public int getLine(int offset) {
+        return firstLine + lineAt(offset);
+    }
+
+    public int getColumn(int offset) {
+        int k = lineAt(offset);
+        return (k == 0 ? firstColumn : 1) + offset - lineStarts[k];
+    }
+
+    /** Number of lines, counting the one after the last newline. */
+    public int getLineCount() { return lineCount; }
+
+    // Index k of the last line start <= offset
+    private int lineAt(int offset) {
+        int k = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+        return k >= 0 ? k : Math.max(0, -k - 2);
+    }
+}
@@ -1,5 +1,10 @@
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
 
 /**
  * ManualScanner - A DFA-based lexical analyzer (Simplified)
@@ -14,265 +19,853 @@ import java.util.*;
  * - Punctuators: ( ) { } [ ] , ; :
  * - Whitespace: [ \t\r\n]+
  */
-public class ManualScanner {
+public class ManualScanner implements Iterable<Token> {
     
-    private String source;
+    // Largest region mapped at once by scanFile; larger files are scanned in windows
+    private static final int MAX_WINDOW = 1 << 30;
+    // Smallest chunk scanParallel hands to one fork/join task
+    private static final int MIN_PARALLEL_CHUNK = 1 << 20;
+    // Most tokens peek() can look ahead in streaming mode
+    public static final int MAX_LOOKAHEAD = 16;
+    // Bump whenever the tokens, symbols or errors produced for some input change; keys ScanCache entries
+    public static final int ENGINE_VERSION = 1;
+    
+    // Exactly one of text/chars/bytes is set; source is the CharSequence view used for lexemes
+    // and [position, length) the part of it still to scan
+    private CharSequence source;
+    private String text;
+    private char[] chars;
+    private ByteBuffer bytes;
+    private int length;
     private int position;
     private int line;
     private int column;
+    private int startPosition;
     private int startLine;
     private int startColumn;
+    private int dfaRow;
+    
+    // Remaining newline-aligned windows of a mapped file (see openFile)
+    private ByteBuffer[] windows;
+    private int nextWindow;
+    
+    // Streaming state: type and symbol ID of the token last passed to addToken, and the peek() ring
+    private TokenType emitted;
+    private int emittedSymbolId;
+    private boolean eofCounted;
+    private Token[] lookahead;
+    private int lookaheadHead;
+    private int lookaheadCount;
     
-    private List<Token> tokens;
+    private TokenStream tokens;
+    private boolean retainTokens;
+    private boolean lazyPositions;
+    // Line starts of the lazy mode LineIndex, reused by the next scan after reset()
+    private int[] lineStarts;
+    // Set while the scanner sits idle in a ScannerPool
+    boolean pooled;
     private SymbolTable symbolTable;
     private ErrorHandler errorHandler;
     
-    private Map<TokenType, Integer> tokenCounts;
-    private int totalLines;
-    private int commentsRemoved;
-    
-    // Boolean literals
-    private static final Set<String> BOOLEAN_LITERALS = new HashSet<>(Arrays.asList("true", "false"));
+    private ScannerMetrics metrics;
+    // Position up to which consumed input has been added to metrics
+    private int countedPosition;
     
     public ManualScanner(String source) {
-        this.source = source;
-        this.position = 0;
-        this.line = 1;
-        this.column = 1;
-        this.tokens = new ArrayList<>();
+        this();
+        reset(source);
+    }
+    
+    /** Scanner that reports into the given handler, e.g. a non-printing one. */
+    ManualScanner(String source, ErrorHandler errorHandler) {
+        this(source);
+        this.errorHandler = errorHandler;
+    }
+    
+    /**
+     * Scans any CharSequence; one that is neither a String nor an array-backed
+     * CharBuffer is copied first, see ManualScanner(CharSequence, int, int, int, int).
+     */
+    public ManualScanner(CharSequence source) {
+        this(source, 0, source.length(), 1, 1);
+    }
+    
+    /**
+     * Scans source[offset, offset + length) as if it began at the given
+     * line and column of a larger document, so token, symbol and error
+     * positions need no fix-up. A String is scanned in place and token
+     * offsets index into it; a CharBuffer backed by an array is scanned as
+     * that array (see the char[] constructor); anything else, such as a
+     * StringBuilder, has the region copied once into a String so that the
+     * scan loop never calls charAt through the interface. Such a scan costs
+     * one copy of the region, and its token offsets index into that copy
+     * (getTokens().getSource()), starting at 0, rather than into source.
+     */
+    public ManualScanner(CharSequence source, int offset, int length, int startLine, int startColumn) {
+        this();
+        reset(source, offset, length, startLine, startColumn);
+    }
+    
+    /**
+     * Scans chars[offset, offset + length) without copying, starting at the
+     * given line and column. Token offsets index into the array, which must
+     * not change while lexemes are still being read from the results.
+     */
+    public ManualScanner(char[] chars, int offset, int length, int startLine, int startColumn) {
+        this();
+        reset(chars, offset, length, startLine, startColumn);
+    }
+    
+    /**
+     * Scans the bytes between the buffer's position and limit directly, one
+     * byte per character; bytes outside ASCII are reported as invalid characters.
+     */
+    public ManualScanner(ByteBuffer bytes) {
+        this();
+        reset(bytes);
+    }
+    
+    // Empty scanner; one of the reset methods sets its input
+    private ManualScanner() {
+        this.tokens = new TokenStream("");
         this.symbolTable = new SymbolTable();
         this.errorHandler = new ErrorHandler();
-        this.tokenCounts = new HashMap<>();
-        this.totalLines = 1;
-        this.commentsRemoved = 0;
-        
-        for (TokenType type : TokenType.values()) {
-            tokenCounts.put(type, 0);
+        this.metrics = new ScannerMetrics();
+    }
+    
+    /**
+     * Prepares this scanner to scan new input as if it had just been
+     * constructed, reusing its token arrays, symbol table, error handler and
+     * metrics instead of allocating new ones. Those are the same objects as
+     * before, emptied: results of the previous scan that must be kept have
+     * to be copied first. The error handler keeps its sink and limit.
+     */
+    public ManualScanner reset(String source) {
+        resetInput(source, 0, source.length(), 1, 1);
+        this.text = source;
+        return this;
+    }
+    
+    /**
+     * Like reset(String) for a region; see ManualScanner(CharSequence, int, int, int, int).
+     * A String or array-backed CharBuffer is scanned in place; any other
+     * CharSequence has the region copied into a String first.
+     */
+    public ManualScanner reset(CharSequence source, int offset, int length, int startLine, int startColumn) {
+        Objects.checkFromIndexSize(offset, length, source.length());
+        if (source instanceof String) {
+            resetInput(source, offset, length, startLine, startColumn);
+            this.text = (String) source;
+        } else if (source instanceof CharBuffer && ((CharBuffer) source).hasArray()) {
+            CharBuffer buffer = (CharBuffer) source;
+            reset(buffer.array(), buffer.arrayOffset() + buffer.position() + offset, length, startLine, startColumn);
+        } else {
+            reset(source.subSequence(offset, offset + length).toString(), 0, length, startLine, startColumn);
         }
+        return this;
+    }
+    
+    /** Like reset(String) for a region of an array; see ManualScanner(char[], int, int, int, int). */
+    public ManualScanner reset(char[] chars, int offset, int length, int startLine, int startColumn) {
+        Objects.checkFromIndexSize(offset, length, chars.length);
+        resetInput(CharBuffer.wrap(chars), offset, length, startLine, startColumn);
+        this.chars = chars;
+        return this;
+    }
+    
+    /** Like reset(String) for the bytes between the buffer's position and limit; see ManualScanner(ByteBuffer). */
+    public ManualScanner reset(ByteBuffer bytes) {
+        resetInput(new ByteSource(bytes), 0, bytes.remaining(), 1, 1);
+        this.bytes = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        return this;
+    }
+    
+    // Points the scanner at source[offset, offset + length) with no input representation set
+    private void resetInput(CharSequence source, int offset, int length, int line, int column) {
+        this.source = source;
+        this.text = null;
+        this.chars = null;
+        this.bytes = null;
+        this.length = offset + length;
+        this.position = offset;
+        this.line = line;
+        this.column = column;
+        this.startPosition = offset;
+        this.startLine = 0;
+        this.startColumn = 0;
+        this.windows = null;
+        this.nextWindow = 0;
+        this.emitted = null;
+        this.eofCounted = false;
+        if (lookahead != null) Arrays.fill(lookahead, null);
+        this.lookaheadHead = 0;
+        this.lookaheadCount = 0;
+        this.tokens.reset(source);
+        this.retainTokens = true;
+        this.symbolTable.clear();
+        this.errorHandler.clear();
+        this.metrics.clear();
+        this.countedPosition = offset;
+    }
+    
+    /**
+     * Drops the references to the last input and the tokens read from it,
+     * so an idle pooled scanner does not keep a file's text or mapping
+     * reachable. The next reset sets a new input.
+     */
+    void clearInput() {
+        this.source = null;
+        this.text = null;
+        this.chars = null;
+        this.bytes = null;
+        this.windows = null;
+        this.emitted = null;
+        if (lookahead != null) Arrays.fill(lookahead, null);
+        this.lookaheadCount = 0;
+        this.tokens.reset("");
+    }
+    
+    /**
+     * A scanner over source that has already scanned it, holding a saved
+     * result (e.g. from ScanCache); lines is the number of '\n' in source.
+     * Statistics are recomputed from the tokens and errors.
+     */
+    static ManualScanner restored(CharSequence source, TokenStream tokens, SymbolTable symbolTable,
+                                  ErrorHandler errorHandler, int lines) {
+        ManualScanner scanner = new ManualScanner();
+        scanner.resetInput(source, 0, source.length(), 1, 1);
+        scanner.tokens = tokens;
+        scanner.symbolTable = symbolTable;
+        scanner.errorHandler = errorHandler;
+        scanner.position = scanner.countedPosition = scanner.length;
+        scanner.line = lines + 1;
+        scanner.eofCounted = true;
+        ScannerMetrics metrics = scanner.metrics;
+        for (int i = 0; i < tokens.size(); i++) metrics.countToken(tokens.getType(i), tokens.getLength(i));
+        for (ErrorHandler.ErrorType type : ErrorHandler.ErrorType.values()) {
+            metrics.addErrors(type, errorHandler.getErrorCount(type));
+        }
+        metrics.addLines(lines);
+        metrics.addBytes(scanner.length);
+        return scanner;
+    }
+    
+    /**
+     * Scans a file through read-only memory mappings instead of decoding it
+     * into a String; see openFile for how large files are handled.
+     */
+    public static ManualScanner scanFile(Path path) throws IOException {
+        return scanFile(path, MAX_WINDOW);
+    }
+    
+    static ManualScanner scanFile(Path path, int maxWindow) throws IOException {
+        ManualScanner scanner = openFile(path, maxWindow);
+        scanner.scan();
+        return scanner;
+    }
+    
+    /**
+     * Maps a file read-only without scanning it, for use with scan() or the
+     * streaming API. Files up to MAX_WINDOW bytes are one mapping. Larger files
+     * are mapped in windows that end on a newline (no token spans a line) and
+     * scan() keeps only the symbol table, errors and counts, so heap use does
+     * not grow with the file size.
+     */
+    public static ManualScanner openFile(Path path) throws IOException {
+        return openFile(path, MAX_WINDOW);
     }
     
-    public List<Token> scan() {
-        while (!isAtEnd()) {
+    static ManualScanner openFile(Path path, int maxWindow) throws IOException {
+        long startTime = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<ByteBuffer> mapped = new ArrayList<>();
+            long windowStart = 0;
+            do {
+                long windowSize = Math.min(maxWindow, size - windowStart);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+                int limit = (int) windowSize;
+                if (windowStart + windowSize < size) {
+                    while (limit > 0 && window.get(limit - 1) != '\n') limit--;
+                    if (limit == 0) {
+                        throw new IOException("Line at byte " + windowStart + " is longer than the "
+                                + maxWindow + "-byte mapping window");
+                    }
+                }
+                mapped.add(window.limit(limit));
+                windowStart += limit;
+            } while (windowStart < size);
+            
+            ManualScanner scanner = new ManualScanner(mapped.get(0));
+            if (mapped.size() > 1) {
+                scanner.windows = mapped.toArray(new ByteBuffer[0]);
+                scanner.nextWindow = 1;
+                scanner.retainTokens = false;
+            }
+            scanner.metrics.addNanos(ScannerMetrics.Phase.READ, System.nanoTime() - startTime);
+            return scanner;
+        }
+    }
+    
+    /**
+     * With lazy positions, scan() and scanParallel() first index where the
+     * lines of the input start and keep only offsets in the token stream,
+     * whose getLine/getColumn resolve them through that LineIndex when read.
+     * Tokens, symbols and errors are the same as without. Kept across reset(),
+     * which also reuses the index's array, so the index and the stream
+     * resolving through it must not be read after a reset.
+     */
+    public void setLazyPositions(boolean lazyPositions) { this.lazyPositions = lazyPositions; }
+    
+    public TokenStream scan() {
+        long startTime = System.nanoTime();
+        indexLines();
+        do {
+            scanRegion();
+        } while (advanceWindow());
+        addEof();
+        metrics.addNanos(ScannerMetrics.Phase.SCAN, System.nanoTime() - startTime);
+        return tokens;
+    }
+    
+    /** Points an empty token stream at a LineIndex of the rest of the input, in lazy positions mode. */
+    private void indexLines() {
+        if (!lazyPositions || !retainTokens || windows != null || tokens.size() != 0) return;
+        int[] starts = lineStarts != null ? lineStarts : new int[16];
+        int count = 0;
+        starts[count++] = position;
+        int i = position;
+        for (;;) {
+            i = text != null ? indexOfNewline(text, i) : chars != null ? indexOfNewline(chars, i) : indexOfNewline(bytes, i);
+            if (i == length) break;
+            if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+            starts[count++] = ++i;
+        }
+        lineStarts = starts;
+        tokens.setLineIndex(new LineIndex(starts, count, line, column));
+    }
+    
+    private void scanRegion() {
+        while (position < length) {
+            startPosition = position;
             startLine = line;
             startColumn = column;
             scanToken();
         }
-        addToken(TokenType.EOF, "");
-        return tokens;
+        countConsumed();
     }
     
-    private void scanToken() {
-        char c = advance();
-        
-        switch (c) {
-            // Punctuators
-            case '(': addToken(TokenType.LPAREN, "("); break;
-            case ')': addToken(TokenType.RPAREN, ")"); break;
-            case '{': addToken(TokenType.LBRACE, "{"); break;
-            case '}': addToken(TokenType.RBRACE, "}"); break;
-            case '[': addToken(TokenType.LBRACKET, "["); break;
-            case ']': addToken(TokenType.RBRACKET, "]"); break;
-            case ',': addToken(TokenType.COMMA, ","); break;
-            case ';': addToken(TokenType.SEMICOLON, ";"); break;
-            case ':': addToken(TokenType.COLON, ":"); break;
-            
-            // Single-line comment: ##[^\n]*
-            case '#':
-                if (match('#')) {
-                    scanSingleLineComment();
-                } else {
-                    errorHandler.invalidCharacter(c, startLine, startColumn);
-                    addToken(TokenType.ERROR, "#");
-                }
-                break;
-            
-            // Whitespace
-            case ' ':
-            case '\t':
-            case '\r':
-                break;
-            case '\n':
-                line++;
-                totalLines++;
-                column = 1;
-                break;
-            
-            default:
-                if (isDigit(c)) {
-                    position--; column--;
-                    scanNumber();
-                } else if (isUpperCase(c)) {
-                    position--; column--;
-                    scanIdentifier();
-                } else if (isLowerCase(c)) {
-                    position--; column--;
-                    scanBooleanOrError();
-                } else {
-                    errorHandler.invalidCharacter(c, startLine, startColumn);
-                    addToken(TokenType.ERROR, String.valueOf(c));
-                }
-                break;
+    private void countConsumed() {
+        metrics.addBytes(position - countedPosition);
+        countedPosition = position;
+    }
+    
+    private void addEof() {
+        if (!eofCounted) {
+            countConsumed();
+            startPosition = position;
+            addToken(TokenType.EOF);
+            eofCounted = true;
+            errorHandler.flush();
         }
     }
     
-    private enum NumberState { START, INTEGER, DOT, DECIMAL, EXP_START, EXP_SIGN, EXPONENT }
+    /**
+     * Same result as scan(), computed on the common ForkJoinPool. No token
+     * spans a line, so the input is cut into chunks at newline boundaries and
+     * each chunk is scanned independently from line 1 with a quiet
+     * ErrorHandler. The chunks are then merged in order: lines are rebased by
+     * the newline count of the preceding chunks, symbol tables and errors are
+     * merged in chunk order, and token arrays are copied in parallel.
+     */
+    public TokenStream scanParallel() {
+        return scanParallel(ForkJoinPool.commonPool());
+    }
     
-    private void scanNumber() {
-        startLine = line;
-        startColumn = column;
+    /** Same as scanParallel() on the given pool, whose parallelism sets the number of chunks. */
+    public TokenStream scanParallel(ForkJoinPool pool) {
+        long startTime = System.nanoTime();
+        long mergeNanos = metrics.getNanos(ScannerMetrics.Phase.MERGE);
+        indexLines();
+        do {
+            scanRegionParallel(pool);
+        } while (advanceWindow());
+        addEof();
+        mergeNanos = metrics.getNanos(ScannerMetrics.Phase.MERGE) - mergeNanos;
+        metrics.addNanos(ScannerMetrics.Phase.SCAN, System.nanoTime() - startTime - mergeNanos);
+        return tokens;
+    }
+    
+    private void scanRegionParallel(ForkJoinPool pool) {
+        int chunkCount = Math.min((length - position) / MIN_PARALLEL_CHUNK, pool.getParallelism() * 4);
+        if (chunkCount < 2) {
+            scanRegion();
+            return;
+        }
         
-        StringBuilder lexeme = new StringBuilder();
-        NumberState state = NumberState.START;
-        boolean isFloat = false;
-        int decimalDigits = 0;
+        int[] bounds = new int[chunkCount + 1];
+        bounds[0] = position;
+        int chunkSize = (length - position) / chunkCount;
+        int n = 1;
+        for (int i = 1; i < chunkCount; i++) {
+            int cut = Math.max(bounds[n - 1], position + i * chunkSize);
+            while (cut < length && charAt(cut) != '\n') cut++;
+            if (cut + 1 >= length) break;
+            bounds[n++] = cut + 1;
+        }
+        bounds[n] = length;
         
-        while (!isAtEnd()) {
-            char c = peek();
-            
-            switch (state) {
-                case START:
-                    if (isDigit(c)) { lexeme.append(advance()); state = NumberState.INTEGER; }
-                    else return;
-                    break;
-                case INTEGER:
-                    if (isDigit(c)) { lexeme.append(advance()); }
-                    else if (c == '.') {
-                        if (position + 1 < source.length() && isDigit(source.charAt(position + 1))) {
-                            lexeme.append(advance()); state = NumberState.DOT; isFloat = true;
-                        } else {
-                            addToken(TokenType.INT_LIT, lexeme.toString()); return;
-                        }
-                    } else if (c == 'e' || c == 'E') {
-                        lexeme.append(advance()); state = NumberState.EXP_START; isFloat = true;
-                    } else {
-                        addToken(TokenType.INT_LIT, lexeme.toString()); return;
-                    }
-                    break;
-                case DOT:
-                    if (isDigit(c)) { lexeme.append(advance()); decimalDigits++; state = NumberState.DECIMAL; }
-                    else { errorHandler.invalidNumber(lexeme.toString(), startLine, startColumn); addToken(TokenType.ERROR, lexeme.toString()); return; }
-                    break;
-                case DECIMAL:
-                    if (isDigit(c)) {
-                        if (decimalDigits < 6) { lexeme.append(advance()); decimalDigits++; }
-                        else {
-                            while (!isAtEnd() && isDigit(peek())) lexeme.append(advance());
-                            errorHandler.tooManyDecimals(lexeme.toString(), startLine, startColumn);
-                            addToken(TokenType.ERROR, lexeme.toString()); return;
-                        }
-                    } else if (c == 'e' || c == 'E') {
-                        lexeme.append(advance()); state = NumberState.EXP_START;
-                    } else {
-                        addToken(TokenType.FLOAT_LIT, lexeme.toString()); return;
-                    }
-                    break;
-                case EXP_START:
-                    if (isDigit(c)) { lexeme.append(advance()); state = NumberState.EXPONENT; }
-                    else if (c == '+' || c == '-') { lexeme.append(advance()); state = NumberState.EXP_SIGN; }
-                    else { errorHandler.invalidNumber(lexeme.toString(), startLine, startColumn); addToken(TokenType.ERROR, lexeme.toString()); return; }
-                    break;
-                case EXP_SIGN:
-                    if (isDigit(c)) { lexeme.append(advance()); state = NumberState.EXPONENT; }
-                    else { errorHandler.invalidNumber(lexeme.toString(), startLine, startColumn); addToken(TokenType.ERROR, lexeme.toString()); return; }
-                    break;
-                case EXPONENT:
-                    if (isDigit(c)) { lexeme.append(advance()); }
-                    else { addToken(TokenType.FLOAT_LIT, lexeme.toString()); return; }
-                    break;
-            }
+        ManualScanner[] chunks = new ManualScanner[n];
+        pool.invoke(new ChunkAction(0, n, i -> {
+            chunks[i] = chunk(bounds[i], bounds[i + 1], i == 0 ? column : 1);
+            chunks[i].scanRegion();
+        }));
+        
+        long mergeStart = System.nanoTime();
+        
+        // Line offset of each chunk = newlines in all preceding chunks
+        int[] lineOffsets = new int[n];
+        int[] tokenOffsets = new int[n];
+        lineOffsets[0] = line - 1;
+        tokenOffsets[0] = tokens.size();
+        for (int i = 1; i < n; i++) {
+            lineOffsets[i] = lineOffsets[i - 1] + chunks[i - 1].line - 1;
+            tokenOffsets[i] = tokenOffsets[i - 1] + chunks[i - 1].tokens.size();
+        }
+        int[][] symbolMaps = new int[n][];
+        for (int i = 0; i < n; i++) {
+            ManualScanner chunk = chunks[i];
+            symbolMaps[i] = symbolTable.merge(chunk.symbolTable, lineOffsets[i]);
+            errorHandler.merge(chunk.errorHandler, lineOffsets[i]);
+            metrics.add(chunk.metrics);
+        }
+        if (retainTokens) {
+            tokens.extend(tokenOffsets[n - 1] + chunks[n - 1].tokens.size() - tokens.size());
+            pool.invoke(new ChunkAction(0, n, i ->
+                    tokens.copyFrom(chunks[i].tokens, tokenOffsets[i], lineOffsets[i], symbolMaps[i])));
         }
         
-        if (state == NumberState.INTEGER) addToken(TokenType.INT_LIT, lexeme.toString());
-        else if (state == NumberState.DECIMAL || state == NumberState.EXPONENT) addToken(TokenType.FLOAT_LIT, lexeme.toString());
-        else { errorHandler.invalidNumber(lexeme.toString(), startLine, startColumn); addToken(TokenType.ERROR, lexeme.toString()); }
+        ManualScanner last = chunks[n - 1];
+        position = countedPosition = length;
+        line = last.line + lineOffsets[n - 1];
+        column = last.column;
+        startLine = last.startLine + lineOffsets[n - 1];
+        startColumn = last.startColumn;
+        metrics.addNanos(ScannerMetrics.Phase.MERGE, System.nanoTime() - mergeStart);
     }
     
-    private void scanIdentifier() {
-        startLine = line;
-        startColumn = column;
-        StringBuilder lexeme = new StringBuilder();
-        
-        char first = advance();
-        lexeme.append(first);
+    /** Unscanned scanner over source[start, end) sharing this scanner's input, starting at line 1 and the given column. */
+    private ManualScanner chunk(int start, int end, int column) {
+        ManualScanner chunk = new ManualScanner();
+        chunk.resetInput(source, start, end - start, 1, column);
+        chunk.text = text;
+        chunk.chars = chars;
+        chunk.bytes = bytes;
+        chunk.retainTokens = retainTokens;
+        if (tokens.getLineIndex() != null) chunk.tokens.setLineIndex(tokens.getLineIndex());
+        chunk.errorHandler = new ErrorHandler(false);
+        return chunk;
+    }
+    
+    /** Runs action(i) for every i in [from, to), splitting the range fork/join style. */
+    private static class ChunkAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
         
-        while (!isAtEnd() && lexeme.length() < 31) {
-            char c = peek();
-            if (isLowerCase(c) || isDigit(c) || c == '_') {
-                lexeme.append(advance());
-            } else break;
+        ChunkAction(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
         }
         
-        String text = lexeme.toString();
-        
-        if (!isAtEnd() && (isLowerCase(peek()) || isDigit(peek()) || peek() == '_')) {
-            while (!isAtEnd() && (isLowerCase(peek()) || isDigit(peek()) || peek() == '_')) {
-                lexeme.append(advance());
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.accept(from);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkAction(from, mid, action), new ChunkAction(mid, to, action));
             }
-            errorHandler.invalidIdentifier(lexeme.toString(), startLine, startColumn);
-            addToken(TokenType.ERROR, lexeme.toString());
-            return;
         }
-        
-        symbolTable.addSymbol(text, null, startLine, startColumn);
-        addToken(TokenType.IDENTIFIER, text);
     }
     
-    private void scanBooleanOrError() {
-        startLine = line;
-        startColumn = column;
-        StringBuilder lexeme = new StringBuilder();
+    private boolean advanceWindow() {
+        if (windows == null || nextWindow == windows.length) return false;
+        countConsumed();
+        bytes = windows[nextWindow].order(ByteOrder.LITTLE_ENDIAN);
+        windows[nextWindow++] = null;
+        source = new ByteSource(bytes);
+        length = bytes.limit();
+        position = countedPosition = 0;
+        return true;
+    }
+    
+    /**
+     * Streaming pull API, like Yylex.yylex(): returns the next token, skipping
+     * whitespace and comments, and EOF once the input is exhausted. The first
+     * call switches the scanner to streaming mode, in which tokens are handed
+     * to the caller instead of being kept in getTokens(); the symbol table,
+     * errors and statistics are updated exactly as by scan(), except that
+     * no SCAN time is recorded.
+     */
+    public Token nextToken() {
+        if (lookaheadCount > 0) {
+            Token token = lookahead[lookaheadHead];
+            lookahead[lookaheadHead] = null;
+            lookaheadHead = (lookaheadHead + 1) % MAX_LOOKAHEAD;
+            lookaheadCount--;
+            return token;
+        }
+        return scanNextToken();
+    }
+    
+    /** Returns the k-th upcoming token (peek(1) is what nextToken() returns next) without consuming it. */
+    public Token peek(int k) {
+        if (k < 1 || k > MAX_LOOKAHEAD) {
+            throw new IllegalArgumentException("Lookahead must be between 1 and " + MAX_LOOKAHEAD + ": " + k);
+        }
+        if (lookahead == null) lookahead = new Token[MAX_LOOKAHEAD];
+        while (lookaheadCount < k) {
+            lookahead[(lookaheadHead + lookaheadCount) % MAX_LOOKAHEAD] = scanNextToken();
+            lookaheadCount++;
+        }
+        return lookahead[(lookaheadHead + k - 1) % MAX_LOOKAHEAD];
+    }
+    
+    /** Streams the remaining tokens up to and including EOF. */
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<Token>() {
+            private boolean done;
+            
+            @Override
+            public boolean hasNext() { return !done; }
+            
+            @Override
+            public Token next() {
+                if (done) throw new NoSuchElementException();
+                Token token = nextToken();
+                done = token.getType() == TokenType.EOF;
+                return token;
+            }
+        };
+    }
+    
+    private Token scanNextToken() {
+        TokenType type = nextType();
+        if (type == TokenType.EOF) return new Token(TokenType.EOF, "", startLine, startColumn);
+        return new Token(type, new CharSlice(source, startPosition, position), startLine, startColumn, emittedSymbolId);
+    }
+    
+    /**
+     * Streaming without Token objects: scans the next token as nextToken()
+     * does and returns its type; the token itself is described by the
+     * accessors below until the next call. Must not be mixed with peek().
+     */
+    TokenType nextType() {
+        retainTokens = false;
+        do {
+            while (position < length) {
+                startPosition = position;
+                startLine = line;
+                startColumn = column;
+                emitted = null;
+                scanToken();
+                if (emitted != null && emitted != TokenType.SINGLE_LINE_COMMENT) {
+                    countConsumed();
+                    return emitted;
+                }
+            }
+        } while (advanceWindow());
+        addEof();
+        return TokenType.EOF;
+    }
+    
+    // The token last returned by nextType(): its lexeme is source[tokenStart, tokenStart + tokenLength)
+    CharSequence tokenSource() { return source; }
+    int tokenStart() { return startPosition; }
+    int tokenLength() { return position - startPosition; }
+    int tokenLine() { return startLine; }
+    int tokenColumn() { return startColumn; }
+    int tokenSymbolId() { return emittedSymbolId; }
+    /** Offset just past the token in the whole input, across mapping windows. */
+    long tokenEnd() { return metrics.getBytes(); }
+    
+    /**
+     * Runs the table-driven DFA from the current position and emits the
+     * longest match; whitespace and newlines are skipped before the DFA.
+     * The commonest tokens, identifiers, integers and punctuators, are
+     * matched by direct-coded loops that end in the state the DFA would
+     * reach, so regular input does not pay a table lookup per character.
+     */
+    private void scanToken() {
+        char c = charAt(position);
+        int cls = DfaTables.classOf(c);
+        if (cls == DfaTables.CLASS_WHITESPACE || cls == DfaTables.CLASS_NEWLINE) {
+            skipWhitespace();
+            return;
+        }
         
-        while (!isAtEnd() && isLowerCase(peek())) {
-            lexeme.append(advance());
+        int row;
+        int pos;
+        if (cls == DfaTables.CLASS_UPPER || cls == DfaTables.CLASS_UPPER_E) {
+            // [A-Z][a-z0-9_]*: the state is ID_<length>, or ID_LONG past 31 characters
+            pos = text != null ? identifierEnd(text, position + 1)
+                    : chars != null ? identifierEnd(chars, position + 1) : identifierEnd(bytes, position + 1);
+            int n = pos - position;
+            row = (n <= DfaTables.ID_LONG - DfaTables.ID_1 ? DfaTables.ID_1 - 1 + n : DfaTables.ID_LONG) << DfaTables.CLASS_BITS;
+        } else if (cls >= DfaTables.CLASS_PUNCT) {
+            pos = position + 1;
+            row = DfaTables.NEXT[(DfaTables.START << DfaTables.CLASS_BITS) + cls];
+        } else if (cls == DfaTables.CLASS_DIGIT) {
+            // [0-9]+ is an INT unless a '.' or exponent follows, which the DFA takes from there
+            pos = text != null ? digitsEnd(text, position + 1)
+                    : chars != null ? digitsEnd(chars, position + 1) : digitsEnd(bytes, position + 1);
+            row = DfaTables.INT << DfaTables.CLASS_BITS;
+            if (pos < length) {
+                char next = charAt(pos);
+                if (next == '.' || next == 'e' || next == 'E') {
+                    pos = text != null ? runDfa(text, row, pos) : chars != null ? runDfa(chars, row, pos) : runDfa(bytes, row, pos);
+                    row = dfaRow;
+                }
+            }
+        } else if (cls == DfaTables.CLASS_HASH && position + 1 < length && charAt(position + 1) == '#') {
+            // A comment is everything up to the newline; search for it instead of stepping the DFA
+            pos = text != null ? indexOfNewline(text, position + 2)
+                    : chars != null ? indexOfNewline(chars, position + 2) : indexOfNewline(bytes, position + 2);
+            row = DfaTables.COMMENT << DfaTables.CLASS_BITS;
+        } else {
+            row = DfaTables.NEXT[(DfaTables.START << DfaTables.CLASS_BITS) + cls];
+            pos = text != null ? runDfa(text, row, position + 1)
+                    : chars != null ? runDfa(chars, row, position + 1) : runDfa(bytes, row, position + 1);
+            row = dfaRow;
         }
         
-        String text = lexeme.toString();
+        int acceptState = row >> DfaTables.CLASS_BITS;
+        if (row < DfaTables.FIRST_ACCEPTING << DfaTables.CLASS_BITS) {
+            acceptState = DfaTables.FALLBACK[acceptState];
+            pos--;
+        }
+        column += pos - position;
+        position = pos;
         
-        if (BOOLEAN_LITERALS.contains(text)) {
-            addToken(TokenType.BOOLEAN_LIT, text);
-        } else {
-            errorHandler.invalidIdentifier(text, startLine, startColumn);
-            addToken(TokenType.ERROR, text);
+        TokenType type = DfaTables.ACCEPT_TYPE[acceptState];
+        ErrorHandler.ErrorType error = DfaTables.ACCEPT_ERROR[acceptState];
+        int symbolId = -1;
+        if (error != null) {
+            errorHandler.report(error, startLine, startColumn, source, startPosition, position - startPosition);
+            metrics.countError(error);
+        } else if (type == TokenType.IDENTIFIER) {
+            symbolId = symbolTable.addSymbol(source, startPosition, position, null, startLine, startColumn);
         }
+        addToken(type, symbolId);
     }
     
-    private void scanSingleLineComment() {
-        StringBuilder lexeme = new StringBuilder("##");
-        while (!isAtEnd() && peek() != '\n') {
-            lexeme.append(advance());
+    /**
+     * Skips a run of whitespace and newlines, counting lines and columns as
+     * if each character were scanned on its own; startLine/startColumn end
+     * up at the last character skipped, where EOF is placed if input ends.
+     * Runs of spaces in byte input are skipped 8 bytes at a time.
+     */
+    private void skipWhitespace() {
+        int pos = position;
+        int col = column;
+        while (pos < length) {
+            char c = charAt(pos);
+            if (c == ' ') {
+                int end = pos + 1;
+                if (end < length && charAt(end) == ' ') {
+                    // Indentation: worth a word-at-a-time search, unlike the single space between tokens
+                    if (text != null) {
+                        do end++; while (end < length && text.charAt(end) == ' ');
+                    } else if (chars != null) {
+                        do end++; while (end < length && chars[end] == ' ');
+                    } else {
+                        end = skipSpaces(bytes, end + 1);
+                    }
+                }
+                col += end - pos;
+                pos = end;
+                startLine = line;
+                startColumn = col - 1;
+                continue;
+            }
+            if (c != '\t' && c != '\r' && c != '\n') break;
+            startLine = line;
+            startColumn = col;
+            pos++;
+            if (c == '\n') {
+                line++;
+                col = 1;
+                metrics.countLine();
+            } else {
+                col++;
+            }
         }
-        commentsRemoved++;
-        addToken(TokenType.SINGLE_LINE_COMMENT, lexeme.toString());
+        startPosition = pos - 1;
+        position = pos;
+        column = col;
     }
     
-    private boolean isAtEnd() { return position >= source.length(); }
-    private char advance() { column++; return source.charAt(position++); }
-    private char peek() { return isAtEnd() ? '\0' : source.charAt(position); }
-    private boolean match(char expected) {
-        if (isAtEnd() || source.charAt(position) != expected) return false;
-        position++; column++; return true;
+    // Word-at-a-time search over little-endian longs: a byte b of the word is
+    // zero after XOR with the target, and zero bytes are found with the usual
+    // (x - 0x01..) & ~x & 0x80.. test, whose lowest set bit is always exact.
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    
+    /** Index of the first '\n' in [from, length), or length. */
+    private int indexOfNewline(ByteBuffer bytes, int from) {
+        int i = from;
+        for (int end = length - 8; i <= end; i += 8) {
+            long x = bytes.getLong(i) ^ ('\n' * ONES);
+            long found = (x - ONES) & ~x & HIGHS;
+            if (found != 0) return i + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+        while (i < length && bytes.get(i) != '\n') i++;
+        return i;
+    }
+    
+    private int indexOfNewline(String text, int from) {
+        int i = text.indexOf('\n', from);
+        return i < 0 || i > length ? length : i;
+    }
+    
+    private int indexOfNewline(char[] chars, int from) {
+        int i = from;
+        while (i < length && chars[i] != '\n') i++;
+        return i;
+    }
+    
+    /** Index of the first byte in [from, length) that is not a space, or length. */
+    private int skipSpaces(ByteBuffer bytes, int from) {
+        int i = from;
+        for (int end = length - 8; i <= end; i += 8) {
+            long x = bytes.getLong(i) ^ (' ' * ONES);
+            if (x != 0) return i + (Long.numberOfTrailingZeros(x) >>> 3);
+        }
+        while (i < length && bytes.get(i) == ' ') i++;
+        return i;
+    }
+    
+    // Identifier and digit runs, one loop per input representation
+    private int identifierEnd(String text, int pos) {
+        while (pos < length && isIdentifierPart(text.charAt(pos))) pos++;
+        return pos;
+    }
+    
+    private int identifierEnd(char[] chars, int pos) {
+        while (pos < length && isIdentifierPart(chars[pos])) pos++;
+        return pos;
+    }
+    
+    private int identifierEnd(ByteBuffer bytes, int pos) {
+        while (pos < length && isIdentifierPart((char) (bytes.get(pos) & 0xFF))) pos++;
+        return pos;
+    }
+    
+    private static boolean isIdentifierPart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+    }
+    
+    private int digitsEnd(String text, int pos) {
+        while (pos < length && isDigit(text.charAt(pos))) pos++;
+        return pos;
+    }
+    
+    private int digitsEnd(char[] chars, int pos) {
+        while (pos < length && isDigit(chars[pos])) pos++;
+        return pos;
+    }
+    
+    private int digitsEnd(ByteBuffer bytes, int pos) {
+        while (pos < length && isDigit((char) (bytes.get(pos) & 0xFF))) pos++;
+        return pos;
+    }
+    
+    private static boolean isDigit(char c) { return c >= '0' && c <= '9'; }
+    
+    // DFA inner loops, one per input representation; they leave the final row in dfaRow.
+    private int runDfa(String text, int row, int pos) {
+        int[] next = DfaTables.NEXT;
+        byte[] charClass = DfaTables.CHAR_CLASS;
+        int length = this.length;
+        while (pos < length) {
+            char ch = text.charAt(pos);
+            int nextRow = next[row + (ch < 128 ? charClass[ch] : DfaTables.CLASS_OTHER)];
+            if (nextRow == DfaTables.DEAD) break;
+            row = nextRow;
+            pos++;
+        }
+        dfaRow = row;
+        return pos;
     }
-    private boolean isDigit(char c) { return c >= '0' && c <= '9'; }
-    private boolean isUpperCase(char c) { return c >= 'A' && c <= 'Z'; }
-    private boolean isLowerCase(char c) { return c >= 'a' && c <= 'z'; }
     
-    private void addToken(TokenType type, String lexeme) {
-        tokens.add(new Token(type, lexeme, startLine, startColumn));
-        tokenCounts.put(type, tokenCounts.get(type) + 1);
+    private int runDfa(char[] chars, int row, int pos) {
+        int[] next = DfaTables.NEXT;
+        byte[] charClass = DfaTables.CHAR_CLASS;
+        int length = this.length;
+        while (pos < length) {
+            char ch = chars[pos];
+            int nextRow = next[row + (ch < 128 ? charClass[ch] : DfaTables.CLASS_OTHER)];
+            if (nextRow == DfaTables.DEAD) break;
+            row = nextRow;
+            pos++;
+        }
+        dfaRow = row;
+        return pos;
     }
     
+    private int runDfa(ByteBuffer bytes, int row, int pos) {
+        int[] next = DfaTables.NEXT;
+        byte[] charClass = DfaTables.CHAR_CLASS;
+        int length = this.length;
+        while (pos < length) {
+            byte b = bytes.get(pos);
+            int nextRow = next[row + (b >= 0 ? charClass[b] : DfaTables.CLASS_OTHER)];
+            if (nextRow == DfaTables.DEAD) break;
+            row = nextRow;
+            pos++;
+        }
+        dfaRow = row;
+        return pos;
+    }
+    
+    
+    private char charAt(int index) {
+        if (text != null) return text.charAt(index);
+        return chars != null ? chars[index] : (char) (bytes.get(index) & 0xFF);
+    }
+    
+    private void addToken(TokenType type) { addToken(type, -1); }
+    
+    private void addToken(TokenType type, int symbolId) {
+        if (retainTokens) tokens.add(type, startPosition, position - startPosition, startLine, startColumn, symbolId);
+        metrics.countToken(type, position - startPosition);
+        emitted = type;
+        emittedSymbolId = symbolId;
+    }
+    
+    public TokenStream getTokens() { return tokens; }
     public SymbolTable getSymbolTable() { return symbolTable; }
     public ErrorHandler getErrorHandler() { return errorHandler; }
-    public Map<TokenType, Integer> getTokenCounts() { return tokenCounts; }
-    public int getTotalLines() { return totalLines; }
-    public int getCommentsRemoved() { return commentsRemoved; }
+    public ScannerMetrics getMetrics() { return metrics; }
+    /** Token counts by type as ints, as they always were; see getMetrics() for longs. */
+    public Map<TokenType, Integer> getTokenCounts() {
+        Map<TokenType, Integer> counts = new EnumMap<>(TokenType.class);
+        for (TokenType type : TokenType.values()) counts.put(type, Math.toIntExact(metrics.getTokenCount(type)));
+        return counts;
+    }
+    public int getTotalLines() { return (int) metrics.getLines() + 1; }
+    public int getCommentsRemoved() { return Math.toIntExact(metrics.getTokenCount(TokenType.SINGLE_LINE_COMMENT)); }
     
     public List<Token> getFilteredTokens() {
         List<Token> filtered = new ArrayList<>();
-        for (Token token : tokens) {
-            if (token.getType() != TokenType.SINGLE_LINE_COMMENT && 
-                token.getType() != TokenType.WHITESPACE) {
-                filtered.add(token);
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenType type = tokens.getType(i);
+            if (type != TokenType.SINGLE_LINE_COMMENT && type != TokenType.WHITESPACE) {
+                filtered.add(tokens.get(i));
             }
         }
         return filtered;
@@ -282,15 +875,17 @@ public class ManualScanner {
         System.out.println("\n" + "=".repeat(60));
         System.out.println("SCANNER STATISTICS");
         System.out.println("=".repeat(60));
-        System.out.println("Total tokens (including comments): " + tokens.size());
-        System.out.println("Total tokens (excluding comments): " + getFilteredTokens().size());
-        System.out.println("Lines processed: " + totalLines);
-        System.out.println("Comments removed: " + commentsRemoved);
+        long total = metrics.getTotalTokens();
+        long filtered = total - metrics.getTokenCount(TokenType.SINGLE_LINE_COMMENT) - metrics.getTokenCount(TokenType.WHITESPACE);
+        System.out.println("Total tokens (including comments): " + total);
+        System.out.println("Total tokens (excluding comments): " + filtered);
+        System.out.println("Lines processed: " + getTotalLines());
+        System.out.println("Comments removed: " + metrics.getTokenCount(TokenType.SINGLE_LINE_COMMENT));
         System.out.println("Errors found: " + errorHandler.getErrorCount());
         System.out.println("\nToken counts by type:");
         System.out.println("-".repeat(40));
         for (TokenType type : TokenType.values()) {
-            int count = tokenCounts.get(type);
+            long count = metrics.getTokenCount(type);
             if (count > 0) System.out.printf("  %-25s: %d%n", type, count);
         }
         System.out.println("=".repeat(60));
@@ -307,15 +902,22 @@ public class ManualScanner {
     }
     
     public static void main(String[] args) {
-        String testCode;
+        ManualScanner scanner;
         if (args.length > 0) {
+            // Files are scanned through a memory mapping and echoed byte for byte
+            Path path = Paths.get(args[0]);
             try {
-                testCode = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(args[0])));
+                Files.size(path);
+                System.out.println("SOURCE CODE:");
+                System.out.println("=".repeat(60));
+                Files.copy(path, System.out);
+                System.out.println();
+                scanner = scanFile(path);
             } catch (IOException e) {
                 System.err.println("Error reading file: " + e.getMessage()); return;
             }
         } else {
-            testCode = """
+            String testCode = """
                 ## Test program
                 Count
                 Variable_name
@@ -337,14 +939,15 @@ public class ManualScanner {
                 
                 ## End of test
                 """;
+            
+            System.out.println("SOURCE CODE:");
+            System.out.println("=".repeat(60));
+            System.out.println(testCode);
+            
+            scanner = new ManualScanner(testCode);
+            scanner.scan();
         }
         
-        System.out.println("SOURCE CODE:");
-        System.out.println("=".repeat(60));
-        System.out.println(testCode);
-        
-        ManualScanner scanner = new ManualScanner(testCode);
-        scanner.scan();
         scanner.printTokens();
         scanner.printStatistics();
         scanner.getSymbolTable().printTable();
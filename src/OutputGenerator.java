@@ -6,10 +6,16 @@ import java.util.*;
  * Generates 10 output files: 5 from ManualScanner, 5 from Yylex.
  * All output files go in tests/ folder.
  * THIS FILE IS IN .gitignore.
+ * With --cache <dir>, ManualScanner results come from a ScanCache there.
  */
 public class OutputGenerator {
 
+    private static ScanCache cache;
+
     public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("--cache")) {
+            cache = new ScanCache(Paths.get(args[1]), ScanCache.DEFAULT_MAX_BYTES);
+        }
         String[] testFiles = {
             "tests/test1.pooh",
             "tests/test2.pooh",
@@ -31,171 +37,129 @@ public class OutputGenerator {
             System.out.println("Done: test" + num + ".pooh");
         }
         System.out.println("All 10 output files generated.");
+        if (cache != null) System.out.println("Cache: " + cache);
     }
 
     private static void writeManualOutput(String source, String outputPath, String testFile) throws Exception {
-        PrintStream ps = new PrintStream(new FileOutputStream(outputPath));
-
-        ps.println("============================================================");
-        ps.println("MANUAL SCANNER OUTPUT");
-        ps.println("Test File: " + testFile);
-        ps.println("============================================================");
-        ps.println();
-
-        ManualScanner scanner = new ManualScanner(source);
-        List<Token> allTokens = scanner.scan();
-
-        // Filtered tokens (no comments, no whitespace)
-        List<Token> filtered = scanner.getFilteredTokens();
-
-        ps.println("TOKEN LIST (Comments Removed)");
-        ps.println("------------------------------------------------------------");
-        for (Token t : filtered) {
-            ps.println(t);
-        }
-        ps.println("------------------------------------------------------------");
-        ps.println();
-
-        // Statistics
-        ps.println("SCANNER STATISTICS");
-        ps.println("------------------------------------------------------------");
-        ps.println("Total tokens (including comments): " + allTokens.size());
-        ps.println("Total tokens (excluding comments): " + filtered.size());
-        ps.println("Lines processed: " + scanner.getTotalLines());
-        ps.println("Comments removed: " + scanner.getCommentsRemoved());
-        ps.println("Errors found: " + scanner.getErrorHandler().getErrorCount());
-        ps.println();
-        ps.println("Token counts by type:");
-
-        Map<TokenType, Integer> counts = scanner.getTokenCounts();
-        for (TokenType type : TokenType.values()) {
-            int count = counts.get(type);
-            if (count > 0) {
-                ps.println("  " + padRight(type.toString(), 25) + ": " + count);
+        try (ReportWriter w = new ReportWriter(Paths.get(outputPath))) {
+            w.println("============================================================");
+            w.println("MANUAL SCANNER OUTPUT");
+            w.append("Test File: ").println(testFile);
+            w.println("============================================================");
+            w.println();
+
+            ManualScanner scanner = cache != null ? cache.scan(source) : new ManualScanner(source);
+            TokenStream allTokens = scanner.scan();
+
+            // Filtered tokens (no comments, no whitespace), rendered straight from the stream
+            w.println("TOKEN LIST (Comments Removed)");
+            w.println("------------------------------------------------------------");
+            int filtered = 0;
+            for (int i = 0; i < allTokens.size(); i++) {
+                TokenType type = allTokens.getType(i);
+                if (type == TokenType.SINGLE_LINE_COMMENT || type == TokenType.WHITESPACE) continue;
+                allTokens.appendTo(i, w);
+                w.println();
+                filtered++;
             }
-        }
-        ps.println("------------------------------------------------------------");
-        ps.println();
-
-        // Symbol Table
-        ps.println("SYMBOL TABLE");
-        ps.println("------------------------------------------------------------");
-        ps.println(padRight("Identifier", 20) + padRight("Type", 15)
-                + padRight("First Line", 12) + padRight("First Col", 10) + "Frequency");
-        ps.println("------------------------------------------------------------");
-        SymbolTable st = scanner.getSymbolTable();
-        if (st.size() == 0) {
-            ps.println("  (No identifiers found)");
-        } else {
-            for (SymbolTable.SymbolEntry e : st.getAllSymbols()) {
-                ps.println(padRight(e.getName(), 20)
-                        + padRight(e.getType() != null ? e.getType() : "unknown", 15)
-                        + padRight("" + e.getFirstOccurrenceLine(), 12)
-                        + padRight("" + e.getFirstOccurrenceColumn(), 10)
-                        + e.getFrequency());
+            w.println("------------------------------------------------------------");
+            w.println();
+
+            // Statistics
+            w.println("SCANNER STATISTICS");
+            w.println("------------------------------------------------------------");
+            w.append("Total tokens (including comments): ").append(allTokens.size()).println();
+            w.append("Total tokens (excluding comments): ").append(filtered).println();
+            w.append("Lines processed: ").append(scanner.getTotalLines()).println();
+            w.append("Comments removed: ").append(scanner.getCommentsRemoved()).println();
+            w.append("Errors found: ").append(scanner.getErrorHandler().getErrorCount()).println();
+            w.println();
+            w.println("Token counts by type:");
+
+            Map<TokenType, Integer> counts = scanner.getTokenCounts();
+            for (TokenType type : TokenType.values()) {
+                int count = counts.get(type);
+                if (count > 0) {
+                    w.append("  ").pad(type.toString(), 25).append(": ").append(count).println();
+                }
             }
-        }
-        ps.println("Total unique identifiers: " + st.size());
-        ps.println("------------------------------------------------------------");
-        ps.println();
+            w.println("------------------------------------------------------------");
+            w.println();
 
-        // Errors
-        ErrorHandler eh = scanner.getErrorHandler();
-        if (eh.hasErrors()) {
-            ps.println("ERROR SUMMARY");
-            ps.println("------------------------------------------------------------");
-            ps.println("Total errors found: " + eh.getErrorCount());
-            List<ErrorHandler.LexicalError> errors = eh.getErrors();
-            for (int i = 0; i < errors.size(); i++) {
-                ps.println("  " + (i + 1) + ". " + errors.get(i));
-            }
-            ps.println("------------------------------------------------------------");
-        } else {
-            ps.println("No lexical errors found.");
+            writeSymbolsAndErrors(w, scanner.getSymbolTable(), scanner.getErrorHandler());
         }
-
-        ps.close();
     }
 
     private static void writeYylexOutput(String source, String outputPath, String testFile) throws Exception {
-        PrintStream ps = new PrintStream(new FileOutputStream(outputPath));
-
-        ps.println("============================================================");
-        ps.println("YYLEX (JFLEX) SCANNER OUTPUT");
-        ps.println("Test File: " + testFile);
-        ps.println("============================================================");
-        ps.println();
-
-        Yylex scanner = new Yylex(source);
-        List<Token> allTokens = scanner.scanAll();
-
-        // Filter out EOF for display, keep it at end
-        List<Token> display = new ArrayList<>();
-        for (Token t : allTokens) {
-            display.add(t);
-        }
-
-        ps.println("TOKEN LIST (Comments Removed)");
-        ps.println("------------------------------------------------------------");
-        for (Token t : display) {
-            ps.println(t);
+        try (ReportWriter w = new ReportWriter(Paths.get(outputPath))) {
+            w.println("============================================================");
+            w.println("YYLEX (JFLEX) SCANNER OUTPUT");
+            w.append("Test File: ").println(testFile);
+            w.println("============================================================");
+            w.println();
+
+            Yylex scanner = new Yylex(source);
+            TokenStream allTokens = scanner.scanAll();
+
+            // Yylex already drops comments; EOF is listed at the end
+            w.println("TOKEN LIST (Comments Removed)");
+            w.println("------------------------------------------------------------");
+            for (int i = 0; i < allTokens.size(); i++) {
+                allTokens.appendTo(i, w);
+                w.println();
+            }
+            w.println("------------------------------------------------------------");
+            w.println();
+
+            // Statistics
+            w.println("SCANNER STATISTICS");
+            w.println("------------------------------------------------------------");
+            w.append("Total tokens: ").append(allTokens.size()).println();
+            w.append("Comments removed: ").append(scanner.getCommentCount()).println();
+            w.append("Errors found: ").append(scanner.getErrorHandler().getErrorCount()).println();
+            w.println("------------------------------------------------------------");
+            w.println();
+
+            writeSymbolsAndErrors(w, scanner.getSymbolTable(), scanner.getErrorHandler());
         }
-        ps.println("------------------------------------------------------------");
-        ps.println();
-
-        // Statistics
-        ps.println("SCANNER STATISTICS");
-        ps.println("------------------------------------------------------------");
-        ps.println("Total tokens: " + allTokens.size());
-        ps.println("Comments removed: " + scanner.getCommentCount());
-        ps.println("Errors found: " + scanner.getErrorHandler().getErrorCount());
-        ps.println("------------------------------------------------------------");
-        ps.println();
+    }
 
+    // The symbol table and error summary sections, the same for both scanners
+    private static void writeSymbolsAndErrors(ReportWriter w, SymbolTable st, ErrorHandler eh) throws IOException {
         // Symbol Table
-        ps.println("SYMBOL TABLE");
-        ps.println("------------------------------------------------------------");
-        ps.println(padRight("Identifier", 20) + padRight("Type", 15)
-                + padRight("First Line", 12) + padRight("First Col", 10) + "Frequency");
-        ps.println("------------------------------------------------------------");
-        SymbolTable st = scanner.getSymbolTable();
+        w.println("SYMBOL TABLE");
+        w.println("------------------------------------------------------------");
+        w.pad("Identifier", 20).pad("Type", 15).pad("First Line", 12).pad("First Col", 10).println("Frequency");
+        w.println("------------------------------------------------------------");
         if (st.size() == 0) {
-            ps.println("  (No identifiers found)");
+            w.println("  (No identifiers found)");
         } else {
             for (SymbolTable.SymbolEntry e : st.getAllSymbols()) {
-                ps.println(padRight(e.getName(), 20)
-                        + padRight(e.getType() != null ? e.getType() : "unknown", 15)
-                        + padRight("" + e.getFirstOccurrenceLine(), 12)
-                        + padRight("" + e.getFirstOccurrenceColumn(), 10)
-                        + e.getFrequency());
+                w.pad(e.getName(), 20)
+                 .pad(e.getType() != null ? e.getType() : "unknown", 15)
+                 .pad(e.getFirstOccurrenceLine(), 12)
+                 .pad(e.getFirstOccurrenceColumn(), 10)
+                 .append(e.getFrequency()).println();
             }
         }
-        ps.println("Total unique identifiers: " + st.size());
-        ps.println("------------------------------------------------------------");
-        ps.println();
+        w.append("Total unique identifiers: ").append(st.size()).println();
+        w.println("------------------------------------------------------------");
+        w.println();
 
         // Errors
-        ErrorHandler eh = scanner.getErrorHandler();
         if (eh.hasErrors()) {
-            ps.println("ERROR SUMMARY");
-            ps.println("------------------------------------------------------------");
-            ps.println("Total errors found: " + eh.getErrorCount());
+            w.println("ERROR SUMMARY");
+            w.println("------------------------------------------------------------");
+            w.append("Total errors found: ").append(eh.getErrorCount()).println();
             List<ErrorHandler.LexicalError> errors = eh.getErrors();
             for (int i = 0; i < errors.size(); i++) {
-                ps.println("  " + (i + 1) + ". " + errors.get(i));
+                w.append("  ").append(i + 1).append(". ");
+                errors.get(i).appendTo(w);
+                w.println();
             }
-            ps.println("------------------------------------------------------------");
+            w.println("------------------------------------------------------------");
         } else {
-            ps.println("No lexical errors found.");
+            w.println("No lexical errors found.");
         }
-
-        ps.close();
-    }
-
-    private static String padRight(String s, int width) {
-        if (s.length() >= width) return s;
-        StringBuilder sb = new StringBuilder(s);
-        while (sb.length() < width) sb.append(' ');
-        return sb.toString();
     }
 }
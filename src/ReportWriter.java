@@ -0,0 +1,154 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+/**
+ * ReportWriter - Buffered text output for large reports
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Text is collected in a char buffer and encoded in bulk into a byte
+ * buffer that is written to a channel, so a line costs a few array copies
+ * instead of a trip through PrintStream's locks, encoder and flushes.
+ * Numbers and padding are written straight into the buffer, and tokens and
+ * errors render themselves through appendTo, so writing a report allocates
+ * almost nothing per line. The bytes are exactly what a PrintStream with
+ * the same charset would write: unmappable characters become the
+ * charset's replacement and println ends lines with line.separator.
+ *
+ * Not thread-safe. Nothing reaches the channel before flush(), close() or
+ * a full buffer.
+ */
+public class ReportWriter implements Appendable, Flushable, Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final char[] chars;
+    private final CharBuffer charView;
+    private final ByteBuffer bytes;
+    private int count;
+
+    /** Creates or truncates a file, encoded in the platform charset like new PrintStream(FileOutputStream). */
+    public ReportWriter(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+    }
+
+    public ReportWriter(WritableByteChannel channel, Charset charset, int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        this.channel = channel;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = new char[bufferSize];
+        this.charView = CharBuffer.wrap(chars);
+        this.bytes = ByteBuffer.allocate((int) Math.ceil(bufferSize * (double) encoder.maxBytesPerChar()));
+    }
+
+    @Override
+    public ReportWriter append(char c) throws IOException {
+        if (count == chars.length) drain(false);
+        chars[count++] = c;
+        return this;
+    }
+
+    @Override
+    public ReportWriter append(CharSequence text) throws IOException {
+        return text == null ? append("null") : append(text, 0, text.length());
+    }
+
+    @Override
+    public ReportWriter append(CharSequence text, int start, int end) throws IOException {
+        if (text == null) return append("null", start, end);
+        while (start < end) {
+            if (count == chars.length) drain(false);
+            int n = Math.min(end - start, chars.length - count);
+            if (text instanceof String) {
+                ((String) text).getChars(start, start + n, chars, count);
+            } else {
+                for (int i = 0; i < n; i++) chars[count + i] = text.charAt(start + i);
+            }
+            count += n;
+            start += n;
+        }
+        return this;
+    }
+
+    /** Appends the decimal form of value, as String.valueOf would give it. */
+    public ReportWriter append(int value) throws IOException {
+        Token.appendInt(this, value);
+        return this;
+    }
+
+    /** Appends text followed by spaces up to width chars; longer text is not cut. */
+    public ReportWriter pad(CharSequence text, int width) throws IOException {
+        append(text);
+        return spaces(width - (text == null ? 4 : text.length()));
+    }
+
+    /** Appends value left-aligned in width chars. */
+    public ReportWriter pad(int value, int width) throws IOException {
+        int digits = value < 0 ? 2 : 1;
+        for (int v = value / 10; v != 0; v /= 10) digits++;
+        append(value);
+        return spaces(width - digits);
+    }
+
+    private ReportWriter spaces(int n) throws IOException {
+        for (int i = 0; i < n; i++) append(' ');
+        return this;
+    }
+
+    public ReportWriter println(CharSequence text) throws IOException {
+        return append(text).println();
+    }
+
+    public ReportWriter println() throws IOException {
+        return append(LINE_SEPARATOR);
+    }
+
+    /** Encodes the buffered text and writes it to the channel. */
+    @Override
+    public void flush() throws IOException {
+        drain(false);
+    }
+
+    /** Flushes and closes the channel. */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain(true);
+            encoder.flush(bytes);
+            writeBytes();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Encodes chars[0, count); a surrogate pair split by the buffer end is kept for the next call
+    private void drain(boolean endOfInput) throws IOException {
+        charView.limit(count).position(0);
+        CoderResult result;
+        do {
+            result = encoder.encode(charView, bytes, endOfInput);
+            if (result.isOverflow()) writeBytes();
+        } while (result.isOverflow());
+        writeBytes();
+        int left = charView.remaining();
+        System.arraycopy(chars, charView.position(), chars, 0, left);
+        count = left;
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) channel.write(bytes);
+        bytes.clear();
+    }
+}
@@ -0,0 +1,327 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.*;
+
+/**
+ * ScanCache - Content-addressed on-disk cache of ManualScanner results
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * An entry is a TokenFile named by a 128-bit hash of the source plus
+ * ManualScanner.ENGINE_VERSION and TokenFile.VERSION, so a changed file or
+ * a changed scanner simply misses. A hit is checked against the source
+ * embedded in the entry, so a hash collision can never serve a wrong
+ * result. scan() returns a ManualScanner that has already scanned, hit or
+ * miss, so drivers swap "new ManualScanner(source)" for "cache.scan(source)"
+ * and change nothing else; on a hit the recorded errors go to the error
+ * sink just as a scan would print them.
+ *
+ * Entries are written to a temporary file, forced to disk and renamed
+ * into place, so a crash leaves either the old state or a complete entry;
+ * leftover temporary files are removed on startup. When the entries exceed
+ * maxBytes the least recently used are deleted; a hit touches the file's
+ * modification time, so recency survives restarts. Safe for concurrent use.
+ *
+ * Usage: java ScanCache <cache-directory> <max-size, e.g. 512m> <file.pooh>...
+ */
+public class ScanCache {
+
+    public static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+    private static final String SUFFIX = ".ptok";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Hash domains: sources scanned as bytes vs. as UTF-16 text
+    private static final int LATIN1 = 1;
+    private static final int UTF16 = 2;
+
+    private final Path directory;
+    private final long maxBytes;
+    private volatile ErrorHandler.Sink errorSink = ErrorHandler.STDERR;
+
+    // Entry name -> size in bytes, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /** Opens (creating if needed) a cache directory holding at most maxBytes of entries. */
+    public ScanCache(Path directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) Files.deleteIfExists(file);
+                else if (name.endsWith(SUFFIX)) found.add(file);
+            }
+        }
+        Map<Path, FileTime> times = new HashMap<>();
+        for (Path file : found) times.put(file, Files.getLastModifiedTime(file));
+        found.sort(Comparator.comparing(times::get));
+        synchronized (this) {
+            for (Path file : found) {
+                long size = Files.size(file);
+                entries.put(file.getFileName().toString(), size);
+                totalBytes += size;
+            }
+            evict();
+        }
+    }
+
+    /** Where recorded errors of returned scanners go; null keeps them quiet. Defaults to System.err. */
+    public void setErrorSink(ErrorHandler.Sink sink) { this.errorSink = sink; }
+
+    /** The result of scanning the bytes between the buffer's position and limit, as by new ManualScanner(bytes). */
+    public ManualScanner scan(ByteBuffer bytes) throws IOException {
+        ByteBuffer source = bytes.slice();
+        String name = entryName(hash(source, LATIN1));
+        long startTime = System.nanoTime();
+        TokenFile file = load(name, entry -> entry.getTextBytes() != null && entry.getTextBytes().equals(source));
+        if (file != null) {
+            int lines = 0;
+            for (int i = 0; i < source.limit(); i++) if (source.get(i) == '\n') lines++;
+            return restore(file, lines, startTime);
+        }
+        return scanAndStore(new ManualScanner(source), name);
+    }
+
+    /** The result of new ManualScanner(source).scan(). */
+    public ManualScanner scan(String source) throws IOException {
+        boolean latin1 = true;
+        for (int i = 0; i < source.length() && latin1; i++) latin1 = source.charAt(i) < 256;
+        // Scanning ISO-8859-1 bytes gives the same result as scanning the String
+        if (latin1) return scan(ByteBuffer.wrap(source.getBytes(StandardCharsets.ISO_8859_1)));
+
+        ByteBuffer chars = ByteBuffer.allocate(2 * source.length());
+        chars.asCharBuffer().put(source);
+        String name = entryName(hash(chars, UTF16));
+        long startTime = System.nanoTime();
+        TokenFile file = load(name, entry -> CharSequence.compare(entry.getText(), source) == 0);
+        if (file != null) {
+            int lines = 0;
+            for (int i = 0; i < source.length(); i++) if (source.charAt(i) == '\n') lines++;
+            return restore(file, lines, startTime);
+        }
+        return scanAndStore(new ManualScanner(source), name);
+    }
+
+    /** The result of scanning a file's bytes, as ManualScanner.scanFile gives. */
+    public ManualScanner scanFile(Path path) throws IOException {
+        return scan(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    private interface Check {
+        boolean matches(TokenFile file);
+    }
+
+    /** Opens and verifies an entry; null on a miss. Unreadable entries are deleted. */
+    private TokenFile load(String name, Check check) {
+        Path path = directory.resolve(name);
+        synchronized (this) {
+            if (entries.get(name) == null && !Files.exists(path)) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        try {
+            TokenFile file = TokenFile.open(path);
+            if (!check.matches(file)) {
+                // A hash collision: keep the entry, scan this source without caching it
+                misses.incrementAndGet();
+                return null;
+            }
+            file.getTokens();
+            file.getSymbolTable();
+            file.getErrorHandler();
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            synchronized (this) {
+                if (!entries.containsKey(name)) {
+                    long size = Files.size(path);
+                    entries.put(name, size);
+                    totalBytes += size;
+                }
+            }
+            hits.incrementAndGet();
+            return file;
+        } catch (IOException | RuntimeException e) {
+            remove(name);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    private ManualScanner restore(TokenFile file, int lines, long startTime) {
+        ErrorHandler errors = file.getErrorHandler();
+        errors.setSink(errorSink);
+        errors.flush();
+        ManualScanner scanner = ManualScanner.restored(file.getText(), file.getTokens(), file.getSymbolTable(), errors, lines);
+        scanner.getMetrics().addNanos(ScannerMetrics.Phase.READ, System.nanoTime() - startTime);
+        return scanner;
+    }
+
+    private ManualScanner scanAndStore(ManualScanner scanner, String name) {
+        scanner.getErrorHandler().setSink(errorSink);
+        scanner.scan();
+
+        Path path = directory.resolve(name);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, name, TEMP_SUFFIX);
+            TokenFile.write(temp, scanner);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            long size = Files.size(temp);
+            if (size > maxBytes) {
+                Files.delete(temp);
+                return scanner;
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+            synchronized (this) {
+                Long old = entries.put(name, size);
+                totalBytes += size - (old != null ? old : 0);
+                evict();
+            }
+            stores.incrementAndGet();
+        } catch (IOException e) {
+            // The cache is best effort: the scan result is still good
+            failures.incrementAndGet();
+            if (temp != null) {
+                try { Files.deleteIfExists(temp); } catch (IOException ignored) { }
+            }
+        }
+        return scanner;
+    }
+
+    // Makes the rename durable; not every platform can open a directory, which is fine
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Guarded by this
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            } catch (IOException e) {
+                failures.incrementAndGet();
+            }
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(String name) {
+        Long size = entries.remove(name);
+        if (size != null) totalBytes -= size;
+        try {
+            Files.deleteIfExists(directory.resolve(name));
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    /** Deletes every entry; the counters are kept. */
+    public synchronized void clear() {
+        for (String name : new ArrayList<>(entries.keySet())) remove(name);
+    }
+
+    private static String entryName(long[] hash) {
+        return String.format("%016x%016x-e%d-f%d%s", hash[0], hash[1],
+                ManualScanner.ENGINE_VERSION, TokenFile.VERSION, SUFFIX);
+    }
+
+    /**
+     * Two independent 64-bit multiply-rotate lanes over 8-byte words, each
+     * finished with the MurmurHash3 mixer. Not cryptographic; hits are
+     * verified against the stored source.
+     */
+    static long[] hash(ByteBuffer bytes, int domain) {
+        ByteBuffer in = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int length = in.remaining();
+        int base = in.position();
+        long h1 = 0x9E3779B97F4A7C15L ^ length ^ ((long) domain << 56);
+        long h2 = 0xC2B2AE3D27D4EB4FL + length + domain;
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long k = in.getLong(base + i);
+            h1 = Long.rotateLeft(h1 ^ k * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+            h2 = Long.rotateLeft(h2 + k * 0x165667B19E3779F9L, 29) * 0x85EBCA77C2B2AE63L;
+        }
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 8) tail |= (in.get(base + i) & 0xFFL) << shift;
+        h1 = Long.rotateLeft(h1 ^ tail * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+        h2 = Long.rotateLeft(h2 + tail * 0x165667B19E3779F9L, 29) * 0x85EBCA77C2B2AE63L;
+        return new long[] { mix(h1 + h2), mix(h2 ^ h1 >>> 17) };
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getStores() { return stores.get(); }
+    public long getEvictions() { return evictions.get(); }
+    /** Entries that could not be written or deleted. */
+    public long getFailures() { return failures.get(); }
+    public synchronized long getSizeBytes() { return totalBytes; }
+    public synchronized int getEntryCount() { return entries.size(); }
+
+    public double getHitRate() {
+        long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    /** The counters as one line of JSON, like ScannerMetrics.toJson(). */
+    public String toJson() {
+        return String.format(Locale.ROOT,
+                "{\"hits\":%d,\"misses\":%d,\"hit_rate\":%.3f,\"stores\":%d,\"evictions\":%d,\"failures\":%d,"
+                        + "\"entries\":%d,\"bytes\":%d,\"max_bytes\":%d}",
+                getHits(), getMisses(), getHitRate(), getStores(), getEvictions(), getFailures(),
+                getEntryCount(), getSizeBytes(), maxBytes);
+    }
+
+    @Override
+    public String toString() { return toJson(); }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java ScanCache <cache-directory> <max-size> <file.pooh>...");
+            System.exit(1);
+        }
+        ScanCache cache = new ScanCache(Paths.get(args[0]), CorpusGenerator.parseSize(args[1]));
+        cache.setErrorSink(null);
+        for (int i = 2; i < args.length; i++) {
+            long start = System.nanoTime();
+            long hitsBefore = cache.getHits();
+            ManualScanner scanner = cache.scanFile(Paths.get(args[i]));
+            System.out.printf("%-40s %-4s %9d tokens %7d errors %8.1f ms%n", args[i],
+                    cache.getHits() > hitsBefore ? "hit" : "miss", scanner.getTokens().size(),
+                    scanner.getErrorHandler().getErrorCount(), (System.nanoTime() - start) / 1e6);
+        }
+        System.out.println(cache.toJson());
+    }
+}
@@ -0,0 +1,465 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ScannerBenchmark - Warmed-up throughput and allocation benchmarks
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Benchmarks: manual (ManualScanner.scan), manual-lazy (the same with
+ * lazy positions, lines and columns left to a LineIndex), manual-parallel
+ * (ManualScanner.scanParallel on a pool of --threads workers, for its
+ * speedup over manual), yylex (Yylex.scanAll),
+ * yylex-bytes (Yylex.scanAll over a direct ByteBuffer, no decoding),
+ * flex (FlexScanner.scanAll, the scanner generated from Scanner.flex),
+ * symbols (SymbolTable insertion of every identifier occurrence) and
+ * tostring (Token.toString of every token), report (every token rendered
+ * through TokenStream.appendTo into a ReportWriter that discards its
+ * bytes) and concurrent-symbols (every identifier occurrence added to one
+ * ConcurrentSymbolTable by --threads writers, each taking a contiguous
+ * share as its own file), each over generated inputs
+ * parameterized by size and token mix.
+ *
+ * A mix that is not a CorpusGenerator preset names a file <name>.pooh in
+ * the --inputs directory (benchmarks/ by default), whose lines are repeated
+ * up to the size; benchmarks/ holds the regular, id-lines and
+ * irregular inputs the scanner's DFA engine was measured on.
+ *
+ * Each (benchmark, mix, size) runs warmup iterations that are discarded,
+ * then measured iterations of at least --time ms each. Reported per op:
+ * MB/s of input, tokens/s, and bytes allocated by the benchmark thread
+ * (the equivalent of JMH's gc.alloc.rate.norm). --save writes the results
+ * as a baseline and --baseline compares against one, exiting with status 1
+ * when any result is slower or allocates more by more than --threshold %.
+ * Like JMH, every benchmark runs in its own JVM unless --fork false.
+ * A multi-threaded benchmark runs once per --threads count, reported as
+ * e.g. concurrent-symbols@8; allocation is counted on the calling thread only.
+ *
+ * Usage: java -Xms2g -Xmx2g ScannerBenchmark [--bench manual,manual-lazy,manual-parallel,yylex,yylex-bytes,flex,symbols,tostring,report,concurrent-symbols]
+ *          [--mix mixed,identifiers,numbers,comments,errors,regular,...] [--inputs benchmarks] [--size 64k,1m,8m]
+ *          [--threads 1,2,4,8,16,32]
+ *          [--warmup 5] [--iterations 10] [--time 200] [--seed 42]
+ *          [--save file] [--baseline file] [--threshold 10] [--fork false]
+ */
+public class ScannerBenchmark {
+
+    private static final String[] BENCHMARKS = {"manual", "manual-lazy", "manual-parallel", "yylex", "yylex-bytes", "flex", "symbols", "tostring", "report",
+            "concurrent-symbols"};
+    // Benchmarks run once per --threads count, as name@threads
+    private static final Set<String> THREADED = Set.of("manual-parallel", "concurrent-symbols");
+    private static final String[] MIXES = {"mixed", "identifiers", "numbers", "comments", "errors"};
+
+    // Results are folded into here so the JIT cannot drop the work
+    private static volatile long blackhole;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Runs a benchmark once and returns the number of tokens processed. */
+    private interface Task {
+        long run() throws IOException;
+    }
+
+    /** One measured unit of work over a prepared input. */
+    private static class Op {
+        final long bytes;   // input characters one run processes, for MB/s
+        final Task task;
+
+        Op(long bytes, Task task) {
+            this.bytes = bytes;
+            this.task = task;
+        }
+    }
+
+    private static class Result {
+        final String key;
+        final double mbPerSec;
+        final double mbError;
+        final double tokensPerSec;
+        final double allocPerOp;
+
+        Result(String key, double mbPerSec, double mbError, double tokensPerSec, double allocPerOp) {
+            this.key = key;
+            this.mbPerSec = mbPerSec;
+            this.mbError = mbError;
+            this.tokensPerSec = tokensPerSec;
+            this.allocPerOp = allocPerOp;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        List<String> benchmarks = withThreads(list(options.getOrDefault("bench", String.join(",", BENCHMARKS))),
+                list(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        List<String> mixes = list(options.getOrDefault("mix", String.join(",", MIXES)));
+        List<String> sizes = list(options.getOrDefault("size", "64k,1m,8m"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "10"));
+        long minTimeNanos = Long.parseLong(options.getOrDefault("time", "200")) * 1_000_000L;
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        double threshold = Double.parseDouble(options.getOrDefault("threshold", "10"));
+        boolean fork = !options.getOrDefault("fork", "true").equals("false");
+
+        if (options.containsKey("child")) {
+            // Forked run of a single benchmark: report one result line to the parent
+            System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+            String source = input(mixes.get(0), parseSize(sizes.get(0)), seed, options);
+            Result result = measure(benchmarks.get(0) + "/" + mixes.get(0) + "/" + sizes.get(0),
+                    prepare(benchmarks.get(0), source), warmup, iterations, minTimeNanos);
+            System.out.println("RESULT\t" + format(result));
+            return;
+        }
+
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("WARNING: per-thread allocation counting is not supported; alloc column is 0");
+        }
+        System.out.println("JVM: " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", max heap " + (Runtime.getRuntime().maxMemory() >> 20) + " MB, "
+                + Runtime.getRuntime().availableProcessors() + " CPUs");
+        System.out.printf("Warmup: %d x %d ms, measurement: %d x %d ms, %s%n%n",
+                warmup, minTimeNanos / 1_000_000, iterations, minTimeNanos / 1_000_000,
+                fork ? "one JVM per benchmark" : "single JVM");
+        System.out.printf("%-21s %-12s %6s %18s %14s %16s%n", "Benchmark", "Mix", "Size", "MB/s", "Tokens/s", "Alloc B/op");
+        System.out.println("-".repeat(90));
+
+        // Error output of the scanners would dominate the errors mix
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        List<Result> results = new ArrayList<>();
+        try {
+            for (String mix : mixes) {
+                for (String size : sizes) {
+                    String source = fork ? null : input(mix, parseSize(size), seed, options);
+                    for (String benchmark : benchmarks) {
+                        String key = benchmark + "/" + mix + "/" + size;
+                        Result result = fork ? runForked(key, options)
+                                : measure(key, prepare(benchmark, source), warmup, iterations, minTimeNanos);
+                        results.add(result);
+                        System.out.printf("%-21s %-12s %6s %10.1f +- %5.1f %14.0f %16.0f%n", benchmark, mix, size,
+                                result.mbPerSec, result.mbError, result.tokensPerSec, result.allocPerOp);
+                    }
+                }
+            }
+        } finally {
+            System.setErr(stderr);
+        }
+
+        if (options.containsKey("save")) {
+            save(results, Paths.get(options.get("save")));
+            System.out.println("\nBaseline saved to " + options.get("save"));
+        }
+        if (options.containsKey("baseline")) {
+            boolean regressed = compare(results, load(Paths.get(options.get("baseline"))), threshold);
+            if (regressed) System.exit(1);
+        }
+    }
+
+    /**
+     * Runs one benchmark in a fresh JVM with the same JVM options, so the
+     * JIT profile of one scanner or mix does not leak into the next.
+     */
+    private static Result runForked(String key, Map<String, String> options) throws IOException, InterruptedException {
+        String[] parts = key.split("/");
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ScannerBenchmark.class.getName());
+        for (String option : new String[] {"warmup", "iterations", "time", "seed", "inputs"}) {
+            if (options.containsKey(option)) Collections.addAll(command, "--" + option, options.get(option));
+        }
+        Collections.addAll(command, "--bench", parts[0], "--mix", parts[1], "--size", parts[2], "--child", "true");
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        Result result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("RESULT\t")) result = parse(line.substring("RESULT\t".length()));
+            }
+        }
+        int exitCode = process.waitFor();
+        if (result == null) throw new IllegalStateException("Forked benchmark " + key + " failed with exit code " + exitCode);
+        return result;
+    }
+
+    /** Expands each multi-threaded benchmark without an explicit @threads into one per thread count. */
+    private static List<String> withThreads(List<String> benchmarks, List<String> threadCounts) {
+        List<String> expanded = new ArrayList<>();
+        for (String benchmark : benchmarks) {
+            if (!THREADED.contains(benchmark)) {
+                expanded.add(benchmark);
+                continue;
+            }
+            for (String threads : threadCounts) expanded.add(benchmark + "@" + Integer.parseInt(threads.trim()));
+        }
+        return expanded;
+    }
+
+    private static Op prepare(String benchmark, String source) {
+        int at = benchmark.indexOf('@');
+        int threads = at < 0 ? 1 : Integer.parseInt(benchmark.substring(at + 1));
+        switch (at < 0 ? benchmark : benchmark.substring(0, at)) {
+            case "manual":
+                return new Op(source.length(), () -> new ManualScanner(source).scan().size());
+            case "manual-lazy":
+                return new Op(source.length(), () -> {
+                    ManualScanner scanner = new ManualScanner(source);
+                    scanner.setLazyPositions(true);
+                    return scanner.scan().size();
+                });
+            case "manual-parallel": {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                return new Op(source.length(), () -> new ManualScanner(source).scanParallel(pool).size());
+            }
+            case "yylex":
+                return new Op(source.length(), () -> new Yylex(source).scanAll().size());
+            case "yylex-bytes": {
+                byte[] encoded = source.getBytes(StandardCharsets.ISO_8859_1);
+                ByteBuffer bytes = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+                return new Op(source.length(), () -> new Yylex(bytes).scanAll().size());
+            }
+            case "flex":
+                return new Op(source.length(), () -> new FlexScanner(source).scanAll().size());
+            case "symbols": {
+                TokenStream tokens = new ManualScanner(source).scan();
+                int[] ids = new int[tokens.size()];
+                int count = 0;
+                long chars = 0;
+                for (int i = 0; i < tokens.size(); i++) {
+                    if (tokens.getType(i) == TokenType.IDENTIFIER) {
+                        ids[count++] = i;
+                        chars += tokens.getLength(i);
+                    }
+                }
+                int[] identifiers = Arrays.copyOf(ids, count);
+                // MB/s here counts identifier characters only
+                return new Op(chars, () -> {
+                    SymbolTable table = new SymbolTable();
+                    for (int i : identifiers) {
+                        int start = tokens.getStart(i);
+                        table.addSymbol(source, start, start + tokens.getLength(i), null,
+                                tokens.getLine(i), tokens.getColumn(i));
+                    }
+                    blackhole += table.size();
+                    return identifiers.length;
+                });
+            }
+            case "concurrent-symbols": {
+                TokenStream tokens = new ManualScanner(source).scan();
+                int[] ids = new int[tokens.size()];
+                int count = 0;
+                long chars = 0;
+                for (int i = 0; i < tokens.size(); i++) {
+                    if (tokens.getType(i) == TokenType.IDENTIFIER) {
+                        ids[count++] = i;
+                        chars += tokens.getLength(i);
+                    }
+                }
+                int[] identifiers = Arrays.copyOf(ids, count);
+                ExecutorService writers = Executors.newFixedThreadPool(threads, task -> {
+                    Thread thread = new Thread(task, "concurrent-symbols-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                // MB/s here counts identifier characters only
+                return new Op(chars, () -> {
+                    ConcurrentSymbolTable table = new ConcurrentSymbolTable();
+                    List<Future<?>> shares = new ArrayList<>(threads);
+                    for (int t = 0; t < threads; t++) {
+                        int file = t;
+                        int from = (int) ((long) identifiers.length * t / threads);
+                        int to = (int) ((long) identifiers.length * (t + 1) / threads);
+                        shares.add(writers.submit(() -> {
+                            for (int k = from; k < to; k++) {
+                                int i = identifiers[k];
+                                int start = tokens.getStart(i);
+                                table.addSymbol(source, start, start + tokens.getLength(i), null, file,
+                                        tokens.getLine(i), tokens.getColumn(i));
+                            }
+                        }));
+                    }
+                    for (Future<?> share : shares) join(share);
+                    blackhole += table.size();
+                    return identifiers.length;
+                });
+            }
+            case "tostring": {
+                TokenStream tokens = new ManualScanner(source).scan();
+                return new Op(source.length(), () -> {
+                    long chars = 0;
+                    for (int i = 0; i < tokens.size(); i++) chars += tokens.get(i).toString().length();
+                    blackhole += chars;
+                    return tokens.size();
+                });
+            }
+            case "report": {
+                TokenStream tokens = new ManualScanner(source).scan();
+                ReportWriter writer = new ReportWriter(Channels.newChannel(OutputStream.nullOutputStream()),
+                        StandardCharsets.UTF_8, ReportWriter.DEFAULT_BUFFER_SIZE);
+                return new Op(source.length(), () -> {
+                    for (int i = 0; i < tokens.size(); i++) {
+                        tokens.appendTo(i, writer);
+                        writer.println();
+                    }
+                    writer.flush();
+                    return tokens.size();
+                });
+            }
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + benchmark);
+        }
+    }
+
+    private static void join(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Benchmark interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Benchmark task failed", e.getCause());
+        }
+    }
+
+    private static Result measure(String key, Op op, int warmup, int iterations,
+                                  long minTimeNanos) throws IOException {
+        for (int i = 0; i < warmup; i++) runIteration(op, minTimeNanos);
+        double[] mbPerSec = new double[iterations];
+        double tokensPerSec = 0;
+        double allocPerOp = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] run = runIteration(op, minTimeNanos);
+            long ops = run[0], tokens = run[1], nanos = run[2], allocated = run[3];
+            mbPerSec[i] = ops * op.bytes / (nanos / 1e9) / (1 << 20);
+            tokensPerSec += tokens / (nanos / 1e9) / iterations;
+            allocPerOp += (double) allocated / ops / iterations;
+        }
+        Arrays.sort(mbPerSec);
+        double median = mbPerSec[iterations / 2];
+        double error = (mbPerSec[iterations - 1] - mbPerSec[0]) / 2;
+        return new Result(key, median, error, tokensPerSec, allocPerOp);
+    }
+
+    /** Runs op until at least minTimeNanos have passed; returns {ops, tokens, nanos, allocated bytes}. */
+    private static long[] runIteration(Op op, long minTimeNanos) throws IOException {
+        long ops = 0, tokens = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            tokens += op.task.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < minTimeNanos);
+        long allocated = allocatedBytes() - allocatedBefore;
+        blackhole += tokens;
+        return new long[] {ops, tokens, elapsed, allocated};
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.isThreadAllocatedMemorySupported() ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    // ─── Input generation ────────────────────────────────────────────────────
+
+    /** Pooh source of about size characters with the given token mix, same for the same seed. */
+    static String generate(String mix, int size, long seed) {
+        CorpusGenerator generator = CorpusGenerator.preset(mix);
+        generator.setSeed(seed);
+        return generator.generate(size);
+    }
+
+    /** The generated mix, or the lines of the input file named mix repeated up to about size characters. */
+    private static String input(String mix, int size, long seed, Map<String, String> options) throws IOException {
+        if (Arrays.asList(MIXES).contains(mix)) return generate(mix, size, seed);
+        Path path = Paths.get(options.getOrDefault("inputs", "benchmarks"), mix + ".pooh");
+        String lines = new String(Files.readAllBytes(path), StandardCharsets.ISO_8859_1);
+        if (lines.isEmpty()) throw new IllegalArgumentException("Empty benchmark input: " + path);
+        if (!lines.endsWith("\n")) lines += "\n";
+        StringBuilder source = new StringBuilder(size + lines.length());
+        while (source.length() < size) source.append(lines);
+        return source.toString();
+    }
+
+    // ─── Baselines ───────────────────────────────────────────────────────────
+
+    private static void save(List<Result> results, Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# key\tMB/s\terror\ttokens/s\talloc B/op");
+        for (Result r : results) lines.add(format(r));
+        Files.write(path, lines);
+    }
+
+    private static Map<String, Result> load(Path path) throws IOException {
+        Map<String, Result> baseline = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(path)) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            Result result = parse(line);
+            baseline.put(result.key, result);
+        }
+        return baseline;
+    }
+
+    private static String format(Result r) {
+        return String.format(Locale.ROOT, "%s\t%.3f\t%.3f\t%.1f\t%.1f",
+                r.key, r.mbPerSec, r.mbError, r.tokensPerSec, r.allocPerOp);
+    }
+
+    private static Result parse(String line) {
+        String[] f = line.split("\t");
+        return new Result(f[0], Double.parseDouble(f[1]), Double.parseDouble(f[2]),
+                Double.parseDouble(f[3]), Double.parseDouble(f[4]));
+    }
+
+    /** Prints the change against the baseline for every shared key; returns true if anything regressed. */
+    private static boolean compare(List<Result> results, Map<String, Result> baseline, double threshold) {
+        System.out.println("\n" + "=".repeat(80));
+        System.out.println("BASELINE COMPARISON (threshold " + threshold + "%)");
+        System.out.println("=".repeat(80));
+        System.out.printf("%-32s %10s %10s %9s %10s  %s%n", "Benchmark", "Base MB/s", "MB/s", "Change", "Alloc", "Verdict");
+        System.out.println("-".repeat(80));
+        boolean regressed = false;
+        for (Result r : results) {
+            Result base = baseline.get(r.key);
+            if (base == null) continue;
+            double speed = (r.mbPerSec / base.mbPerSec - 1) * 100;
+            double alloc = base.allocPerOp > 0 ? (r.allocPerOp / base.allocPerOp - 1) * 100 : 0;
+            // A change inside both runs' error bars is noise, whatever its size
+            boolean noise = Math.abs(r.mbPerSec - base.mbPerSec) <= r.mbError + base.mbError;
+            String verdict = "ok";
+            if (speed < -threshold && !noise) verdict = "SLOWER";
+            else if (speed > threshold && !noise) verdict = "faster";
+            if (alloc > threshold) verdict = verdict.equals("SLOWER") ? "SLOWER, MORE ALLOC" : "MORE ALLOC";
+            regressed |= verdict.startsWith("SLOWER") || verdict.equals("MORE ALLOC");
+            System.out.printf(Locale.ROOT, "%-32s %10.1f %10.1f %+8.1f%% %+9.1f%%  %s%n",
+                    r.key, base.mbPerSec, r.mbPerSec, speed, alloc, verdict);
+        }
+        System.out.println("=".repeat(80));
+        System.out.println(regressed ? "REGRESSION against baseline" : "No regression against baseline");
+        return regressed;
+    }
+
+    // ─── Options ─────────────────────────────────────────────────────────────
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static List<String> list(String value) { return Arrays.asList(value.split(",")); }
+
+    private static int parseSize(String size) { return Math.toIntExact(CorpusGenerator.parseSize(size)); }
+}
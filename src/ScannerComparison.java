@@ -4,7 +4,9 @@ import java.util.*;
 
 /**
  * ScannerComparison - Runs both ManualScanner and Yylex on all test files
- * and writes a side-by-side comparison to ComparisonOutput.txt.
+ * and writes a side-by-side comparison to ComparisonOutput.txt. The scanner
+ * generated from Scanner.flex (FlexScanner) is cross-checked against
+ * ManualScanner and timed alongside both.
  * 
  * THIS FILE IS IN .gitignore - NOT part of the submission.
  */
@@ -33,10 +35,12 @@ public class ScannerComparison {
         // Aggregate stats
         long totalManualTime = 0;
         long totalYylexTime = 0;
+        long totalFlexTime = 0;
         int totalManualTokens = 0;
         int totalYylexTokens = 0;
         int totalMatches = 0;
         int totalMismatches = 0;
+        int totalFlexMismatches = 0;
         int totalFiles = 0;
 
         for (String testFile : testFiles) {
@@ -76,6 +80,14 @@ public class ScannerComparison {
             long ylexTime = ylexEnd - ylexStart;
             totalYylexTime += ylexTime;
 
+            // ─── Run FlexScanner ─────────────────────────────────────────────────
+            long flexStart = System.nanoTime();
+            FlexScanner flex = new FlexScanner(source);
+            List<Token> flexTokens = flex.scanAll();
+            long flexEnd = System.nanoTime();
+            long flexTime = flexEnd - flexStart;
+            totalFlexTime += flexTime;
+
             totalManualTokens += manualTokens.size();
             totalYylexTokens += ylexTokens.size();
 
@@ -187,11 +199,36 @@ public class ScannerComparison {
             }
             println("");
 
+            // ─── FlexScanner Cross-Check ─────────────────────────────────────────
+            println("FLEXSCANNER CROSS-CHECK (generated from Scanner.flex):");
+            println("-" .repeat(60));
+            // The scanners place EOF differently, so EOF tokens are compared by type only
+            int flexDiffs = 0;
+            for (int i = 0; i < Math.max(manualTokens.size(), flexTokens.size()); i++) {
+                Token m = (i < manualTokens.size()) ? manualTokens.get(i) : null;
+                Token f = (i < flexTokens.size()) ? flexTokens.get(i) : null;
+                boolean same = m != null && f != null && (m.getType() == TokenType.EOF
+                        ? f.getType() == TokenType.EOF
+                        : m.toString().equals(f.toString()));
+                if (!same && flexDiffs++ < 10) {
+                    println(String.format("  Token #%d:\n    Manual:      %s\n    FlexScanner: %s", i + 1,
+                            m != null ? m : "(no token)", f != null ? f : "(no token)"));
+                }
+            }
+            boolean flexSymbols = mST.getAllSymbols().toString().equals(flex.getSymbolTable().getAllSymbols().toString());
+            boolean flexErrors = mEH.getErrors().toString().equals(flex.getErrorHandler().getErrors().toString());
+            println(flexDiffs == 0 ? "  ✓ Tokens match ManualScanner." : "  ✗ " + flexDiffs + " token difference(s).");
+            println(flexSymbols ? "  ✓ Symbol tables match." : "  ✗ Symbol tables differ.");
+            println(flexErrors ? "  ✓ Errors match." : "  ✗ Errors differ.");
+            println("");
+            totalFlexMismatches += flexDiffs + (flexSymbols ? 0 : 1) + (flexErrors ? 0 : 1);
+
             // ─── Performance for this file ───────────────────────────────────────
             println("PERFORMANCE:");
             println("-" .repeat(60));
             println(String.format("  ManualScanner: %,d ns (%.3f ms)", manualTime, manualTime / 1_000_000.0));
             println(String.format("  Yylex:         %,d ns (%.3f ms)", ylexTime, ylexTime / 1_000_000.0));
+            println(String.format("  FlexScanner:   %,d ns (%.3f ms)", flexTime, flexTime / 1_000_000.0));
             String faster = manualTime < ylexTime ? "ManualScanner" : "Yylex";
             double ratio = manualTime < ylexTime
                     ? (double) ylexTime / manualTime
@@ -218,10 +255,12 @@ public class ScannerComparison {
         println("");
         println("ManualScanner total tokens: " + totalManualTokens);
         println("Yylex total tokens:         " + totalYylexTokens);
+        println("FlexScanner mismatches vs ManualScanner: " + totalFlexMismatches);
         println("");
         println("OVERALL PERFORMANCE:");
         println(String.format("  ManualScanner total time: %,d ns (%.3f ms)", totalManualTime, totalManualTime / 1_000_000.0));
         println(String.format("  Yylex total time:         %,d ns (%.3f ms)", totalYylexTime, totalYylexTime / 1_000_000.0));
+        println(String.format("  FlexScanner total time:   %,d ns (%.3f ms)", totalFlexTime, totalFlexTime / 1_000_000.0));
         String overallFaster = totalManualTime < totalYylexTime ? "ManualScanner" : "Yylex";
         double overallRatio = totalManualTime < totalYylexTime
                 ? (double) totalYylexTime / totalManualTime
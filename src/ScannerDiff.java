@@ -0,0 +1,205 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * ScannerDiff - Differential test of ManualScanner against Yylex
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Both scanners stream the same file in lockstep through their Token-free
+ * pull APIs (ManualScanner maps the file, Yylex reads it through a fixed
+ * buffer), and each pair of tokens is compared on type, lexeme, line,
+ * column and symbol ID; nothing is formatted unless it differs. Errors are
+ * compared as they happen: every error is recorded at its ERROR token with
+ * that token's lexeme, so an ERROR pair only has to leave both handlers
+ * with the same per-type counts. Neither handler records errors and no
+ * token is kept, so memory does not grow with the file apart from the two
+ * symbol tables, which are compared entry by entry at the end.
+ *
+ * After a mismatch the scanner that is behind is advanced until both end
+ * at the same input offset, so one divergence is reported once rather
+ * than as a cascade; symbol IDs are only compared until then, as one
+ * extra identifier shifts every later ID. The first --show mismatches are
+ * printed; --stop N gives up on a file after N (0 runs to the end).
+ * EOF tokens are compared by type only.
+ *
+ * Usage: java ScannerDiff <file.pooh>... [--show N] [--stop N]
+ * Exits with status 1 if any file differs.
+ */
+public class ScannerDiff {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final ErrorHandler.ErrorType[] ERROR_TYPES = ErrorHandler.ErrorType.values();
+
+    private final PrintStream out;
+    private int show = 10;
+    private int stop;
+
+    public ScannerDiff(PrintStream out) { this.out = out; }
+
+    /** Mismatches printed per file. */
+    public void setShow(int show) { this.show = show; }
+    /** Mismatches after which a file is abandoned; 0 compares every token. */
+    public void setStop(int stop) { this.stop = stop; }
+
+    /** Compares the scanners on one file, printing a summary line; returns true if they agree. */
+    public boolean diff(Path path) throws IOException {
+        long startTime = System.nanoTime();
+        ManualScanner manual = ManualScanner.openFile(path);
+        ErrorHandler manualErrors = quiet(manual.getErrorHandler());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Yylex yylex = new Yylex(channel, BUFFER_SIZE);
+            ErrorHandler yylexErrors = quiet(yylex.getErrorHandler());
+
+            // Per-type error counts of manual minus yylex, reset after each realignment
+            int[] errorSkew = new int[ERROR_TYPES.length];
+            boolean aligned = true;
+            long tokens = 0;
+            int mismatches = 0;
+            TokenType m = manual.nextType();
+            TokenType y = yylex.nextType();
+            for (;;) {
+                tokens++;
+                if (!matches(manual, m, yylex, y, aligned, errorSkew)) {
+                    if (++mismatches <= show) printMismatch(path, tokens, manual, m, yylex, y);
+                    if (stop > 0 && mismatches >= stop) {
+                        out.printf("%s: stopped after %d mismatches at token %d%n", path, mismatches, tokens);
+                        return false;
+                    }
+                    aligned = false;
+                    while (!(m == TokenType.EOF && y == TokenType.EOF)
+                            && (manual.tokenEnd() != yylex.tokenEnd() || (m == TokenType.EOF) != (y == TokenType.EOF))) {
+                        if (y == TokenType.EOF || (m != TokenType.EOF && manual.tokenEnd() < yylex.tokenEnd())) {
+                            m = manual.nextType();
+                        } else {
+                            y = yylex.nextType();
+                        }
+                    }
+                    for (ErrorHandler.ErrorType type : ERROR_TYPES) {
+                        errorSkew[type.ordinal()] = manualErrors.getErrorCount(type) - yylexErrors.getErrorCount(type);
+                    }
+                }
+                if (m == TokenType.EOF) break;
+                m = manual.nextType();
+                y = yylex.nextType();
+            }
+
+            int symbolDiffs = diffSymbols(path, manual.getSymbolTable(), yylex.getSymbolTable());
+            int errorDiffs = 0;
+            for (ErrorHandler.ErrorType type : ERROR_TYPES) {
+                int manualCount = manualErrors.getErrorCount(type);
+                int yylexCount = yylexErrors.getErrorCount(type);
+                if (manualCount != yylexCount) {
+                    errorDiffs++;
+                    out.printf("%s: %s errors: ManualScanner %d, Yylex %d%n", path, type, manualCount, yylexCount);
+                }
+            }
+
+            long nanos = System.nanoTime() - startTime;
+            long bytes = manual.getMetrics().getBytes();
+            String summary = String.format("%,d tokens, %,d symbols, %,d errors, %,d bytes in %.1f ms (%.1f MB/s)",
+                    tokens, manual.getSymbolTable().size(), manualErrors.getErrorCount(), bytes,
+                    nanos / 1e6, bytes * 1e3 / nanos);
+            if (mismatches + symbolDiffs + errorDiffs == 0) {
+                out.println(path + ": OK, " + summary);
+                return true;
+            }
+            out.printf("%s: DIFFERENT, %d token mismatches, %d symbol differences, %d error type differences; %s%n",
+                    path, mismatches, symbolDiffs, errorDiffs, summary);
+            return false;
+        }
+    }
+
+    private static ErrorHandler quiet(ErrorHandler errorHandler) {
+        errorHandler.setSink(null);
+        errorHandler.setMaxErrors(0);
+        return errorHandler;
+    }
+
+    private static boolean matches(ManualScanner manual, TokenType m, Yylex yylex, TokenType y,
+                                   boolean aligned, int[] errorSkew) {
+        if (m != y) return false;
+        if (m == TokenType.EOF) return true;
+        if (manual.tokenLine() != yylex.tokenLine() || manual.tokenColumn() != yylex.tokenColumn()) return false;
+        if (!yylex.lexemeEquals(manual.tokenSource(), manual.tokenStart(), manual.tokenLength())) return false;
+        if (m == TokenType.IDENTIFIER) return !aligned || manual.tokenSymbolId() == yylex.tokenSymbolId();
+        if (m == TokenType.ERROR) {
+            ErrorHandler manualErrors = manual.getErrorHandler();
+            ErrorHandler yylexErrors = yylex.getErrorHandler();
+            for (ErrorHandler.ErrorType type : ERROR_TYPES) {
+                int skew = manualErrors.getErrorCount(type) - yylexErrors.getErrorCount(type);
+                if (skew != errorSkew[type.ordinal()]) return false;
+            }
+        }
+        return true;
+    }
+
+    private void printMismatch(Path path, long index, ManualScanner manual, TokenType m, Yylex yylex, TokenType y) {
+        CharSequence source = manual.tokenSource();
+        Token manualToken = new Token(m, new CharSlice(source, manual.tokenStart(), manual.tokenStart() + manual.tokenLength()),
+                manual.tokenLine(), manual.tokenColumn(), manual.tokenSymbolId());
+        Token yylexToken = new Token(y, yylex.tokenText(), yylex.tokenLine(), yylex.tokenColumn(), yylex.tokenSymbolId());
+        out.printf("%s: token #%d differs%n", path, index);
+        out.println("    ManualScanner: " + manualToken + describe(manualToken, manual.getErrorHandler()));
+        out.println("    Yylex:         " + yylexToken + describe(yylexToken, yylex.getErrorHandler()));
+    }
+
+    private static String describe(Token token, ErrorHandler errors) {
+        if (token.getType() == TokenType.IDENTIFIER) return " symbol " + token.getSymbolId();
+        if (token.getType() != TokenType.ERROR) return "";
+        StringBuilder counts = new StringBuilder(" errors so far:");
+        for (ErrorHandler.ErrorType type : ERROR_TYPES) {
+            counts.append(' ').append(type).append('=').append(errors.getErrorCount(type));
+        }
+        return counts.toString();
+    }
+
+    private int diffSymbols(Path path, SymbolTable manual, SymbolTable yylex) {
+        int diffs = 0;
+        if (manual.size() != yylex.size()) {
+            diffs++;
+            out.printf("%s: symbol tables have %d (ManualScanner) and %d (Yylex) entries%n", path, manual.size(), yylex.size());
+        }
+        for (int id = 0; id < Math.min(manual.size(), yylex.size()); id++) {
+            SymbolTable.SymbolEntry a = manual.getSymbol(id);
+            SymbolTable.SymbolEntry b = yylex.getSymbol(id);
+            if (a.getName().equals(b.getName()) && a.getFrequency() == b.getFrequency()
+                    && a.getFirstOccurrenceLine() == b.getFirstOccurrenceLine()
+                    && a.getFirstOccurrenceColumn() == b.getFirstOccurrenceColumn()) {
+                continue;
+            }
+            if (++diffs <= show) {
+                out.printf("%s: symbol %d differs%n    ManualScanner: %s%n    Yylex:         %s%n", path, id, a, b);
+            }
+        }
+        return diffs;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        ScannerDiff diff = new ScannerDiff(System.out);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--show") && i + 1 < args.length) {
+                diff.setShow(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--stop") && i + 1 < args.length) {
+                diff.setStop(Integer.parseInt(args[++i]));
+            } else if (args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            } else {
+                files.add(Paths.get(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.out.println("Usage: java ScannerDiff <file.pooh>... [--show N] [--stop N]");
+            System.exit(1);
+        }
+
+        int different = 0;
+        for (Path file : files) {
+            if (!diff.diff(file)) different++;
+        }
+        if (files.size() > 1) System.out.printf("%n%d of %d files differ%n", different, files.size());
+        System.exit(different == 0 ? 0 : 1);
+    }
+}
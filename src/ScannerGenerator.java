@@ -0,0 +1,920 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * ScannerGenerator - Generates a table-driven scanner from a JFlex specification
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Reads the subset of JFlex that Scanner.flex uses: the three %% sections,
+ * the options %public %class %type %line %column %unicode %pack, a %{ %}
+ * code block, macro definitions, and rules with Java actions and <<EOF>>.
+ * Regular expressions may use | * + ? {n} {n,m} {n,} ( ) [...] [^...]
+ * "..." . \escapes and {Macro}.
+ *
+ * The rules are combined into one NFA, turned into a DFA over character
+ * classes by subset construction and minimized by partition refinement.
+ * Matching is longest match, earliest rule on ties. As with JFlex's %pack,
+ * the tables are emitted as run-length encoded strings that are unpacked
+ * when the class loads, and identical transition rows are shared through
+ * a row map.
+ *
+ * Unlike JFlex, only '\n' ends a line for %line/%column, as in ManualScanner;
+ * every other character, '\r' included, counts as one column.
+ *
+ * Usage: java ScannerGenerator <spec.flex> [-d outputDir]
+ */
+public class ScannerGenerator {
+
+    private static final int ALPHABET = 0x10000;
+
+    /** Regular expression syntax tree, instantiated into NFA fragments where it is used. */
+    private static final class Node {
+        static final int CHARS = 0, SEQ = 1, ALT = 2, REPEAT = 3;
+
+        final int kind;
+        final BitSet chars;
+        final List<Node> children;
+        final int min, max;                 // REPEAT; max -1 = unbounded
+
+        Node(int kind, BitSet chars, List<Node> children, int min, int max) {
+            this.kind = kind;
+            this.chars = chars;
+            this.children = children;
+            this.min = min;
+            this.max = max;
+        }
+
+        static Node chars(BitSet chars) { return new Node(CHARS, chars, null, 0, 0); }
+        static Node repeat(Node child, int min, int max) { return new Node(REPEAT, null, List.of(child), min, max); }
+    }
+
+    private static final class NfaState {
+        final int id;
+        final List<NfaState> epsilon = new ArrayList<>(2);
+        BitSet chars;
+        NfaState target;
+        int rule = -1;
+
+        NfaState(int id) { this.id = id; }
+    }
+
+    private static final class Rule {
+        final String regex;
+        final String action;
+        final int line;
+
+        Rule(String regex, String action, int line) {
+            this.regex = regex;
+            this.action = action;
+            this.line = line;
+        }
+    }
+
+    // Specification
+    private String userCode = "";
+    private String classCode = "";
+    private String className = "Yylex";
+    private String returnType = "int";
+    private boolean isPublic;
+    private boolean countLines;
+    private boolean countColumns;
+    private final Map<String, String> macros = new LinkedHashMap<>();
+    private final Map<String, Node> parsedMacros = new HashMap<>();
+    private final Set<String> expanding = new HashSet<>();
+    private final List<Rule> rules = new ArrayList<>();
+    private String eofAction;
+
+    // Automata
+    private final List<NfaState> nfa = new ArrayList<>();
+    private char[] charClass;
+    private int numClasses;
+    private int[][] transitions;            // minimized DFA, [state][class], -1 = no transition
+    private int[] acceptRule;               // rule index, -1 = not accepting
+    private int dfaStatesBeforeMinimization;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && !(args.length == 3 && args[1].equals("-d"))) {
+            System.out.println("Usage: java ScannerGenerator <spec.flex> [-d outputDir]");
+            System.exit(1);
+        }
+        Path spec = Paths.get(args[0]);
+        Path dir = args.length == 3 ? Paths.get(args[2]) : spec.toAbsolutePath().getParent();
+
+        ScannerGenerator generator = new ScannerGenerator();
+        generator.parse(Files.readString(spec, StandardCharsets.UTF_8));
+        generator.build();
+        Path output = dir.resolve(generator.className + ".java");
+        Files.writeString(output, generator.emit(spec.getFileName().toString()), StandardCharsets.UTF_8);
+        System.out.printf("%d rules, %d character classes, %d DFA states (%d before minimization)%n",
+                generator.rules.size(), generator.numClasses, generator.transitions.length,
+                generator.dfaStatesBeforeMinimization);
+        System.out.println("Wrote " + output);
+    }
+
+    // ─── Specification ───────────────────────────────────────────────────────
+
+    void parse(String spec) {
+        String[] lines = spec.split("\r?\n", -1);
+        int i = 0;
+        StringBuilder user = new StringBuilder();
+        while (i < lines.length && !lines[i].trim().equals("%%")) user.append(lines[i++]).append('\n');
+        if (i == lines.length) throw new IllegalArgumentException("Missing first %%");
+        userCode = user.toString().trim();
+        i++;
+
+        for (; i < lines.length && !lines[i].trim().equals("%%"); i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("//")) continue;
+            if (line.startsWith("/*")) {
+                while (!lines[i].contains("*/")) i++;
+                continue;
+            }
+            if (line.equals("%{")) {
+                StringBuilder code = new StringBuilder();
+                for (i++; i < lines.length && !lines[i].trim().equals("%}"); i++) code.append(lines[i]).append('\n');
+                if (i == lines.length) throw new IllegalArgumentException("Unterminated %{");
+                classCode = code.toString();
+            } else if (line.startsWith("%")) {
+                option(line, i + 1);
+            } else {
+                int eq = line.indexOf('=');
+                if (eq < 0) throw error(i + 1, "expected macro definition: " + line);
+                macros.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+        }
+        if (i == lines.length) throw new IllegalArgumentException("Missing second %%");
+
+        StringBuilder rest = new StringBuilder();
+        int firstRuleLine = i + 2;
+        for (i++; i < lines.length; i++) rest.append(lines[i]).append('\n');
+        parseRules(rest.toString(), firstRuleLine);
+        if (rules.isEmpty()) throw new IllegalArgumentException("No rules");
+    }
+
+    private void option(String line, int lineNumber) {
+        String[] parts = line.split("\\s+", 2);
+        switch (parts[0]) {
+            case "%public": isPublic = true; break;
+            case "%class": className = parts[1].trim(); break;
+            case "%type": returnType = parts[1].trim(); break;
+            case "%line": countLines = true; break;
+            case "%column": countColumns = true; break;
+            case "%unicode":
+            case "%pack":
+                break;                      // always a 16-bit alphabet and packed tables
+            default:
+                throw error(lineNumber, "unsupported option " + parts[0]);
+        }
+    }
+
+    private void parseRules(String text, int lineNumber) {
+        int pos = 0;
+        int line = lineNumber;
+        while (true) {
+            // Skip whitespace and comments between rules
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '\n') { line++; pos++; }
+                else if (Character.isWhitespace(c)) pos++;
+                else if (text.startsWith("/*", pos)) {
+                    int end = text.indexOf("*/", pos);
+                    if (end < 0) throw error(line, "unterminated comment");
+                    line += count(text, pos, end, '\n');
+                    pos = end + 2;
+                } else if (text.startsWith("//", pos)) {
+                    while (pos < text.length() && text.charAt(pos) != '\n') pos++;
+                } else break;
+            }
+            if (pos == text.length()) return;
+
+            int regexStart = pos;
+            pos = endOfRegex(text, pos, line);
+            String regex = text.substring(regexStart, pos);
+            while (pos < text.length() && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) pos++;
+            if (pos == text.length() || text.charAt(pos) != '{') throw error(line, "expected '{' after " + regex);
+            int actionEnd = endOfAction(text, pos, line);
+            String action = text.substring(pos, actionEnd);
+            if (regex.equals("<<EOF>>")) eofAction = action;
+            else rules.add(new Rule(regex, action, line));
+            line += count(text, pos, actionEnd, '\n');
+            pos = actionEnd;
+        }
+    }
+
+    /** A rule's regex ends at the first whitespace outside quotes and brackets. */
+    private static int endOfRegex(String text, int pos, int line) {
+        boolean quoted = false;
+        int brackets = 0;
+        for (; pos < text.length(); pos++) {
+            char c = text.charAt(pos);
+            if (c == '\\') { pos++; continue; }
+            if (c == '"') quoted = !quoted;
+            else if (!quoted && c == '[') brackets++;
+            else if (!quoted && c == ']' && brackets > 0) brackets--;
+            else if (!quoted && brackets == 0 && Character.isWhitespace(c)) return pos;
+            else if (c == '\n') throw error(line, "unterminated regular expression");
+        }
+        return pos;
+    }
+
+    /** Finds the end of a brace-delimited Java action, skipping strings, chars and comments. */
+    private static int endOfAction(String text, int pos, int line) {
+        int depth = 0;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '"' || c == '\'') {
+                for (pos++; pos < text.length() && text.charAt(pos) != c; pos++) {
+                    if (text.charAt(pos) == '\\') pos++;
+                }
+            } else if (text.startsWith("//", pos)) {
+                while (pos < text.length() && text.charAt(pos) != '\n') pos++;
+                continue;
+            } else if (text.startsWith("/*", pos)) {
+                pos = text.indexOf("*/", pos + 2) + 1;
+                if (pos == 0) break;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return pos + 1;
+            }
+            pos++;
+        }
+        throw error(line, "unterminated action");
+    }
+
+    private static int count(String text, int from, int to, char c) {
+        int n = 0;
+        for (int i = from; i < to; i++) if (text.charAt(i) == c) n++;
+        return n;
+    }
+
+    private static IllegalArgumentException error(int line, String message) {
+        return new IllegalArgumentException("Line " + line + ": " + message);
+    }
+
+    // ─── Regular expressions ─────────────────────────────────────────────────
+
+    private Node parseRegex(String regex, String where) {
+        RegexParser parser = new RegexParser(regex, where);
+        Node node = parser.alternation();
+        if (parser.pos < regex.length()) throw parser.error("unexpected '" + regex.charAt(parser.pos) + "'");
+        return node;
+    }
+
+    private Node macro(String name, String where) {
+        Node node = parsedMacros.get(name);
+        if (node != null) return node;
+        String regex = macros.get(name);
+        if (regex == null) throw new IllegalArgumentException(where + ": undefined macro {" + name + "}");
+        if (!expanding.add(name)) throw new IllegalArgumentException(where + ": macro {" + name + "} refers to itself");
+        node = parseRegex(regex, "macro " + name);
+        expanding.remove(name);
+        parsedMacros.put(name, node);
+        return node;
+    }
+
+    private final class RegexParser {
+        private final String s;
+        private final String where;
+        private int pos;
+
+        RegexParser(String s, String where) {
+            this.s = s;
+            this.where = where;
+        }
+
+        Node alternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(concatenation());
+            while (pos < s.length() && s.charAt(pos) == '|') {
+                pos++;
+                alternatives.add(concatenation());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Node(Node.ALT, null, alternatives, 0, 0);
+        }
+
+        private Node concatenation() {
+            List<Node> sequence = new ArrayList<>();
+            while (pos < s.length() && s.charAt(pos) != '|' && s.charAt(pos) != ')') sequence.add(postfix());
+            return sequence.size() == 1 ? sequence.get(0) : new Node(Node.SEQ, null, sequence, 0, 0);
+        }
+
+        private Node postfix() {
+            Node node = atom();
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c == '*') { pos++; node = Node.repeat(node, 0, -1); }
+                else if (c == '+') { pos++; node = Node.repeat(node, 1, -1); }
+                else if (c == '?') { pos++; node = Node.repeat(node, 0, 1); }
+                else if (c == '{' && pos + 1 < s.length() && Character.isDigit(s.charAt(pos + 1))) {
+                    int close = s.indexOf('}', pos);
+                    if (close < 0) throw error("unterminated repetition");
+                    String[] bounds = s.substring(pos + 1, close).split(",", -1);
+                    int min = Integer.parseInt(bounds[0].trim());
+                    int max = bounds.length == 1 ? min : bounds[1].trim().isEmpty() ? -1 : Integer.parseInt(bounds[1].trim());
+                    if (max != -1 && max < min) throw error("bad repetition {" + min + "," + max + "}");
+                    pos = close + 1;
+                    node = Node.repeat(node, min, max);
+                } else break;
+            }
+            return node;
+        }
+
+        private Node atom() {
+            if (pos == s.length()) throw error("unexpected end");
+            char c = s.charAt(pos++);
+            switch (c) {
+                case '(': {
+                    Node node = alternation();
+                    if (pos == s.length() || s.charAt(pos) != ')') throw error("missing ')'");
+                    pos++;
+                    return node;
+                }
+                case '[':
+                    return Node.chars(charClass());
+                case '"': {
+                    List<Node> sequence = new ArrayList<>();
+                    while (pos < s.length() && s.charAt(pos) != '"') sequence.add(Node.chars(single(nextChar())));
+                    if (pos == s.length()) throw error("unterminated string");
+                    pos++;
+                    return sequence.size() == 1 ? sequence.get(0) : new Node(Node.SEQ, null, sequence, 0, 0);
+                }
+                case '.': {
+                    BitSet any = new BitSet(ALPHABET);
+                    any.set(0, ALPHABET);
+                    any.clear('\n');
+                    return Node.chars(any);
+                }
+                case '{': {
+                    int close = s.indexOf('}', pos);
+                    if (close < 0) throw error("unterminated macro reference");
+                    String name = s.substring(pos, close);
+                    pos = close + 1;
+                    return macro(name, where);
+                }
+                case '*': case '+': case '?': case '|': case ')':
+                    throw error("unexpected '" + c + "'");
+                default:
+                    pos--;
+                    return Node.chars(single(nextChar()));
+            }
+        }
+
+        private BitSet charClass() {
+            BitSet set = new BitSet(ALPHABET);
+            boolean negated = pos < s.length() && s.charAt(pos) == '^';
+            if (negated) pos++;
+            while (pos < s.length() && s.charAt(pos) != ']') {
+                char from = nextChar();
+                if (pos + 1 < s.length() && s.charAt(pos) == '-' && s.charAt(pos + 1) != ']') {
+                    pos++;
+                    char to = nextChar();
+                    if (to < from) throw error("bad range " + from + "-" + to);
+                    set.set(from, to + 1);
+                } else {
+                    set.set(from);
+                }
+            }
+            if (pos == s.length()) throw error("unterminated character class");
+            pos++;
+            if (negated) set.flip(0, ALPHABET);
+            return set;
+        }
+
+        private char nextChar() {
+            char c = s.charAt(pos++);
+            if (c != '\\') return c;
+            if (pos == s.length()) throw error("trailing backslash");
+            c = s.charAt(pos++);
+            switch (c) {
+                case 'n': return '\n';
+                case 't': return '\t';
+                case 'r': return '\r';
+                case 'f': return '\f';
+                case 'b': return '\b';
+                case 'u':
+                    if (pos + 4 > s.length()) throw error("bad \\u escape");
+                    pos += 4;
+                    return (char) Integer.parseInt(s.substring(pos - 4, pos), 16);
+                default: return c;
+            }
+        }
+
+        private BitSet single(char c) {
+            BitSet set = new BitSet(ALPHABET);
+            set.set(c);
+            return set;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(where + ": " + message + " in " + s);
+        }
+    }
+
+    // ─── Automata ────────────────────────────────────────────────────────────
+
+    void build() {
+        NfaState start = newState();
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            NfaState[] fragment = fragment(parseRegex(rule.regex, "line " + rule.line));
+            start.epsilon.add(fragment[0]);
+            fragment[1].rule = i;
+        }
+        buildCharClasses();
+        buildDfa(start);
+        minimize();
+    }
+
+    private NfaState newState() {
+        NfaState state = new NfaState(nfa.size());
+        nfa.add(state);
+        return state;
+    }
+
+    /** Thompson construction; returns {start, end}. */
+    private NfaState[] fragment(Node node) {
+        NfaState start = newState();
+        NfaState end;
+        switch (node.kind) {
+            case Node.CHARS:
+                end = newState();
+                start.chars = node.chars;
+                start.target = end;
+                break;
+            case Node.SEQ:
+                end = start;
+                for (Node child : node.children) {
+                    NfaState[] f = fragment(child);
+                    end.epsilon.add(f[0]);
+                    end = f[1];
+                }
+                break;
+            case Node.ALT:
+                end = newState();
+                for (Node child : node.children) {
+                    NfaState[] f = fragment(child);
+                    start.epsilon.add(f[0]);
+                    f[1].epsilon.add(end);
+                }
+                break;
+            default: {
+                Node child = node.children.get(0);
+                NfaState current = start;
+                for (int i = 0; i < node.min; i++) {
+                    NfaState[] f = fragment(child);
+                    current.epsilon.add(f[0]);
+                    current = f[1];
+                }
+                end = newState();
+                if (node.max == -1) {
+                    NfaState[] f = fragment(child);
+                    current.epsilon.add(f[0]);
+                    f[1].epsilon.add(f[0]);
+                    f[1].epsilon.add(end);
+                } else {
+                    for (int i = node.min; i < node.max; i++) {
+                        current.epsilon.add(end);
+                        NfaState[] f = fragment(child);
+                        current.epsilon.add(f[0]);
+                        current = f[1];
+                    }
+                }
+                current.epsilon.add(end);
+            }
+        }
+        return new NfaState[] {start, end};
+    }
+
+    /** Splits the alphabet into classes of characters that no NFA edge tells apart. */
+    private void buildCharClasses() {
+        Set<BitSet> distinct = new LinkedHashSet<>();
+        for (NfaState state : nfa) if (state.chars != null) distinct.add(state.chars);
+
+        int[] classOf = new int[ALPHABET];
+        int count = 1;
+        for (BitSet set : distinct) {
+            // The characters of each class that are in the set move to a new class
+            int[] split = new int[count];
+            Arrays.fill(split, -1);
+            for (int c = set.nextSetBit(0); c >= 0; c = set.nextSetBit(c + 1)) {
+                int old = classOf[c];
+                if (split[old] == -1) split[old] = count++;
+                classOf[c] = split[old];
+            }
+            count = renumber(classOf, count);
+        }
+        numClasses = count;
+        charClass = new char[ALPHABET];
+        for (int c = 0; c < ALPHABET; c++) charClass[c] = (char) classOf[c];
+    }
+
+    /** Renumbers classes densely in order of their first character, dropping unused numbers. */
+    private static int renumber(int[] classOf, int count) {
+        int[] map = new int[count];
+        Arrays.fill(map, -1);
+        int next = 0;
+        for (int c = 0; c < ALPHABET; c++) {
+            if (map[classOf[c]] == -1) map[classOf[c]] = next++;
+            classOf[c] = map[classOf[c]];
+        }
+        return next;
+    }
+
+    private void buildDfa(NfaState start) {
+        // For each NFA edge, the character classes it accepts
+        Map<BitSet, BitSet> classesOf = new HashMap<>();
+        for (NfaState state : nfa) {
+            if (state.chars == null || classesOf.containsKey(state.chars)) continue;
+            BitSet classes = new BitSet(numClasses);
+            for (int c = state.chars.nextSetBit(0); c >= 0; c = state.chars.nextSetBit(c + 1)) classes.set(charClass[c]);
+            classesOf.put(state.chars, classes);
+        }
+
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        List<int[]> rows = new ArrayList<>();
+        BitSet first = closure(single(start.id));
+        ids.put(first, 0);
+        sets.add(first);
+        for (int d = 0; d < sets.size(); d++) {
+            BitSet set = sets.get(d);
+            int[] row = new int[numClasses];
+            for (int k = 0; k < numClasses; k++) {
+                BitSet moved = new BitSet(nfa.size());
+                for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                    NfaState state = nfa.get(s);
+                    if (state.chars != null && classesOf.get(state.chars).get(k)) moved.set(state.target.id);
+                }
+                if (moved.isEmpty()) {
+                    row[k] = -1;
+                    continue;
+                }
+                BitSet target = closure(moved);
+                Integer id = ids.get(target);
+                if (id == null) {
+                    id = sets.size();
+                    ids.put(target, id);
+                    sets.add(target);
+                }
+                row[k] = id;
+            }
+            rows.add(row);
+        }
+
+        transitions = rows.toArray(new int[0][]);
+        acceptRule = new int[sets.size()];
+        for (int d = 0; d < sets.size(); d++) {
+            int rule = -1;
+            BitSet set = sets.get(d);
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                int r = nfa.get(s).rule;
+                if (r >= 0 && (rule == -1 || r < rule)) rule = r;
+            }
+            acceptRule[d] = rule;
+        }
+        dfaStatesBeforeMinimization = sets.size();
+    }
+
+    private static BitSet single(int bit) {
+        BitSet set = new BitSet();
+        set.set(bit);
+        return set;
+    }
+
+    private BitSet closure(BitSet states) {
+        BitSet result = (BitSet) states.clone();
+        Deque<NfaState> stack = new ArrayDeque<>();
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) stack.push(nfa.get(s));
+        while (!stack.isEmpty()) {
+            for (NfaState next : stack.pop().epsilon) {
+                if (!result.get(next.id)) {
+                    result.set(next.id);
+                    stack.push(next);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Moore partition refinement, then renumbering in breadth-first order from the start state. */
+    private void minimize() {
+        int n = transitions.length;
+        int[] block = new int[n];
+        for (int s = 0; s < n; s++) block[s] = acceptRule[s] + 1;
+        int blocks = -1;
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] next = new int[n];
+            for (int s = 0; s < n; s++) {
+                List<Integer> signature = new ArrayList<>(numClasses + 1);
+                signature.add(block[s]);
+                for (int k = 0; k < numClasses; k++) signature.add(transitions[s][k] < 0 ? -1 : block[transitions[s][k]]);
+                Integer id = signatures.get(signature);
+                if (id == null) {
+                    id = signatures.size();
+                    signatures.put(signature, id);
+                }
+                next[s] = id;
+            }
+            block = next;
+            if (signatures.size() == blocks) break;
+            blocks = signatures.size();
+        }
+
+        int[] order = new int[blocks];
+        Arrays.fill(order, -1);
+        int[] representative = new int[blocks];
+        int count = 0;
+        Deque<Integer> queue = new ArrayDeque<>();
+        order[block[0]] = count++;
+        representative[0] = 0;
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int k = 0; k < numClasses; k++) {
+                int t = transitions[s][k];
+                if (t >= 0 && order[block[t]] == -1) {
+                    representative[count] = t;
+                    order[block[t]] = count++;
+                    queue.add(t);
+                }
+            }
+        }
+
+        int[][] minimized = new int[count][numClasses];
+        int[] rules = new int[count];
+        for (int m = 0; m < count; m++) {
+            int s = representative[m];
+            for (int k = 0; k < numClasses; k++) {
+                int t = transitions[s][k];
+                minimized[m][k] = t < 0 ? -1 : order[block[t]];
+            }
+            rules[m] = acceptRule[s];
+        }
+        transitions = minimized;
+        acceptRule = rules;
+    }
+
+    // ─── Code generation ─────────────────────────────────────────────────────
+
+    String emit(String specName) {
+        int states = transitions.length;
+        Map<List<Integer>, Integer> rowOffsets = new HashMap<>();
+        List<Integer> trans = new ArrayList<>();
+        int[] rowMap = new int[states];
+        int[] attributes = new int[states];
+        int[] actions = new int[states];
+        for (int s = 0; s < states; s++) {
+            List<Integer> row = new ArrayList<>(numClasses);
+            boolean hasTransition = false;
+            for (int t : transitions[s]) {
+                row.add(t);
+                hasTransition |= t >= 0;
+            }
+            Integer offset = rowOffsets.get(row);
+            if (offset == null) {
+                offset = trans.size();
+                rowOffsets.put(row, offset);
+                trans.addAll(row);
+            }
+            rowMap[s] = offset;
+            attributes[s] = (acceptRule[s] >= 0 ? 1 : 0) | (hasTransition ? 0 : 8);
+            actions[s] = acceptRule[s] + 1;
+        }
+        int[] cmap = new int[ALPHABET];
+        for (int c = 0; c < ALPHABET; c++) cmap[c] = charClass[c];
+
+        StringBuilder out = new StringBuilder();
+        out.append("// DO NOT EDIT\n");
+        out.append("// Generated by ScannerGenerator from ").append(specName).append(": ");
+        out.append(rules.size()).append(" rules, ").append(numClasses).append(" character classes, ");
+        out.append(states).append(" DFA states\n\n");
+        if (!userCode.isEmpty()) out.append(userCode).append('\n');
+        out.append(isPublic ? "public " : "").append("class ").append(className).append(" {\n\n");
+
+        out.append("    /** Returned by zzRefill()/used as zzInput at end of input. */\n");
+        out.append("    private static final int YYEOF = -1;\n");
+        out.append("    private static final int ZZ_BUFFERSIZE = 16384;\n\n");
+        out.append("    /** Character class of every char, run-length encoded as (count, value) pairs. */\n");
+        out.append("    private static final char[] ZZ_CMAP = zzUnpackCMap(\n");
+        appendPacked(out, cmap, 0);
+        out.append("    /** Offset of each state's row in ZZ_TRANS; identical rows are shared. */\n");
+        out.append("    private static final int[] ZZ_ROWMAP = zzUnpack(").append(states).append(", 0,\n");
+        appendPacked(out, rowMap, 0);
+        out.append("    /** Next state for row + character class, -1 if none. */\n");
+        out.append("    private static final int[] ZZ_TRANS = zzUnpack(").append(trans.size()).append(", 1,\n");
+        appendPacked(out, trans.stream().mapToInt(Integer::intValue).toArray(), 1);
+        out.append("    /** Per state: 1 = accepting, 8 = no outgoing transitions. */\n");
+        out.append("    private static final int[] ZZ_ATTRIBUTE = zzUnpack(").append(states).append(", 0,\n");
+        appendPacked(out, attributes, 0);
+        out.append("    /** Action (rule number + 1) of each accepting state. */\n");
+        out.append("    private static final int[] ZZ_ACTION = zzUnpack(").append(states).append(", 0,\n");
+        appendPacked(out, actions, 0);
+
+        out.append("    private java.io.Reader zzReader;\n");
+        out.append("    private char[] zzBuffer = new char[ZZ_BUFFERSIZE];\n");
+        out.append("    private int zzStartRead;\n");
+        out.append("    private int zzMarkedPos;\n");
+        out.append("    private int zzCurrentPos;\n");
+        out.append("    private int zzEndRead;\n");
+        out.append("    private boolean zzAtEOF;\n");
+        out.append("    private int yyline;\n");
+        out.append("    private int yycolumn;\n\n");
+        out.append("    // ─── Code from ").append(specName).append(" ───\n\n");
+        out.append(classCode.replaceAll("\\s+$", "")).append("\n\n");
+        out.append("    // ─── Generated scanner ───\n\n");
+        out.append("    public ").append(className).append("(java.io.Reader in) {\n");
+        out.append("        this.zzReader = in;\n");
+        out.append("    }\n\n");
+        out.append(SKELETON_HELPERS);
+        emitYylex(out);
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static final String SKELETON_HELPERS = String.join("\n",
+            "    private static char[] zzUnpackCMap(String packed) {",
+            "        char[] map = new char[0x10000];",
+            "        for (int i = 0, j = 0; i < packed.length(); ) {",
+            "            int count = packed.charAt(i++);",
+            "            char value = packed.charAt(i++);",
+            "            do map[j++] = value; while (--count > 0);",
+            "        }",
+            "        return map;",
+            "    }",
+            "",
+            "    private static int[] zzUnpack(int size, int offset, String packed) {",
+            "        int[] result = new int[size];",
+            "        for (int i = 0, j = 0; i < packed.length(); ) {",
+            "            int count = packed.charAt(i++);",
+            "            int value = packed.charAt(i++) - offset;",
+            "            do result[j++] = value; while (--count > 0);",
+            "        }",
+            "        return result;",
+            "    }",
+            "",
+            "    /**",
+            "     * Moves the current match to the front of the buffer, growing it if the",
+            "     * match fills it, and reads more input; returns true at end of input.",
+            "     */",
+            "    private boolean zzRefill() throws java.io.IOException {",
+            "        if (zzStartRead > 0) {",
+            "            System.arraycopy(zzBuffer, zzStartRead, zzBuffer, 0, zzEndRead - zzStartRead);",
+            "            zzEndRead -= zzStartRead;",
+            "            zzCurrentPos -= zzStartRead;",
+            "            zzMarkedPos -= zzStartRead;",
+            "            zzStartRead = 0;",
+            "        }",
+            "        if (zzEndRead == zzBuffer.length) zzBuffer = java.util.Arrays.copyOf(zzBuffer, zzBuffer.length * 2);",
+            "        int numRead;",
+            "        do {",
+            "            numRead = zzReader.read(zzBuffer, zzEndRead, zzBuffer.length - zzEndRead);",
+            "        } while (numRead == 0);",
+            "        if (numRead < 0) return true;",
+            "        zzEndRead += numRead;",
+            "        return false;",
+            "    }",
+            "",
+            "    public final String yytext() { return new String(zzBuffer, zzStartRead, zzMarkedPos - zzStartRead); }",
+            "    public final int yylength() { return zzMarkedPos - zzStartRead; }",
+            "    public final char yycharat(int pos) { return zzBuffer[zzStartRead + pos]; }",
+            "",
+            "");
+
+    private void emitYylex(StringBuilder out) {
+        out.append("    /** Matches the longest prefix of the remaining input and runs its rule's action. */\n");
+        out.append("    @SuppressWarnings(\"fallthrough\")\n");
+        out.append("    public ").append(returnType).append(" yylex() throws java.io.IOException {\n");
+        out.append("        char[] zzCMapL = ZZ_CMAP;\n");
+        out.append("        int[] zzTransL = ZZ_TRANS;\n");
+        out.append("        int[] zzRowMapL = ZZ_ROWMAP;\n");
+        out.append("        int[] zzAttrL = ZZ_ATTRIBUTE;\n\n");
+        out.append("        while (true) {\n");
+        out.append("            int zzMarkedPosL = zzMarkedPos;\n");
+        if (countLines || countColumns) {
+            out.append("            for (int i = zzStartRead; i < zzMarkedPosL; i++) {\n");
+            out.append("                if (zzBuffer[i] == '\\n') {\n");
+            if (countLines) out.append("                    yyline++;\n");
+            out.append("                    yycolumn = 0;\n");
+            out.append("                } else {\n");
+            out.append("                    yycolumn++;\n");
+            out.append("                }\n");
+            out.append("            }\n");
+        }
+        out.append(String.join("\n",
+                "            int zzAction = -1;",
+                "            int zzCurrentPosL = zzCurrentPos = zzStartRead = zzMarkedPosL;",
+                "            int zzState = 0;",
+                "            int zzInput;",
+                "            char[] zzBufferL = zzBuffer;",
+                "            int zzEndReadL = zzEndRead;",
+                "",
+                "            zzForAction: {",
+                "                while (true) {",
+                "                    if (zzCurrentPosL < zzEndReadL) {",
+                "                        zzInput = zzBufferL[zzCurrentPosL++];",
+                "                    } else if (zzAtEOF) {",
+                "                        zzInput = YYEOF;",
+                "                        break zzForAction;",
+                "                    } else {",
+                "                        zzCurrentPos = zzCurrentPosL;",
+                "                        zzMarkedPos = zzMarkedPosL;",
+                "                        boolean eof = zzRefill();",
+                "                        zzCurrentPosL = zzCurrentPos;",
+                "                        zzMarkedPosL = zzMarkedPos;",
+                "                        zzBufferL = zzBuffer;",
+                "                        zzEndReadL = zzEndRead;",
+                "                        if (eof) {",
+                "                            zzInput = YYEOF;",
+                "                            break zzForAction;",
+                "                        }",
+                "                        zzInput = zzBufferL[zzCurrentPosL++];",
+                "                    }",
+                "                    int zzNext = zzTransL[zzRowMapL[zzState] + zzCMapL[zzInput]];",
+                "                    if (zzNext == -1) break zzForAction;",
+                "                    zzState = zzNext;",
+                "                    int zzAttributes = zzAttrL[zzState];",
+                "                    if ((zzAttributes & 1) == 1) {",
+                "                        zzAction = zzState;",
+                "                        zzMarkedPosL = zzCurrentPosL;",
+                "                        if ((zzAttributes & 8) == 8) break zzForAction;",
+                "                    }",
+                "                }",
+                "            }",
+                "            zzMarkedPos = zzMarkedPosL;",
+                "",
+                "            if (zzInput == YYEOF && zzStartRead == zzCurrentPos) {",
+                "                zzAtEOF = true;",
+                ""));
+        if (eofAction != null) {
+            out.append(indent(eofAction, "                ")).append('\n');
+        } else {
+            out.append("                return ").append(returnType.equals("int") ? "YYEOF" : "null").append(";\n");
+        }
+        out.append("            }\n");
+        out.append("            switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {\n");
+        for (int i = 0; i < rules.size(); i++) {
+            out.append("                case ").append(i + 1).append(": // ").append(rules.get(i).regex.replace("\\u", "\\\\u")).append('\n');
+            out.append(indent(rules.get(i).action, "                    ")).append('\n');
+            out.append("                    // fall through\n");
+            out.append("                case ").append(rules.size() + i + 1).append(":\n");
+            out.append("                    break;\n");
+        }
+        out.append("                default:\n");
+        out.append("                    throw new IllegalStateException(\"No rule matches input at line \" + (yyline + 1) + \", column \" + (yycolumn + 1));\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        out.append("    }\n");
+    }
+
+    /** Re-indents an action: the first line at indent, later lines keeping their relative indentation. */
+    private static String indent(String action, String indent) {
+        String[] lines = action.split("\n", -1);
+        int common = Integer.MAX_VALUE;
+        for (int i = 1; i < lines.length; i++) {
+            if (lines[i].isBlank() || lines[i].trim().equals("}")) continue;
+            int leading = 0;
+            while (leading < lines[i].length() && lines[i].charAt(leading) == ' ') leading++;
+            common = Math.min(common, leading);
+        }
+        StringBuilder out = new StringBuilder(indent).append(lines[0].trim());
+        for (int i = 1; i < lines.length; i++) {
+            out.append('\n');
+            if (lines[i].isBlank()) continue;
+            // The closing brace lines up with the opening one
+            if (lines[i].trim().equals("}")) out.append(indent).append('}');
+            else out.append(indent).append("    ").append(lines[i].substring(common).stripTrailing());
+        }
+        return out.toString();
+    }
+
+    /** Appends values as a run-length encoded string literal ending the statement. */
+    private static void appendPacked(StringBuilder out, int[] values, int offset) {
+        StringBuilder runs = new StringBuilder();
+        for (int i = 0; i < values.length; ) {
+            int j = i;
+            while (j < values.length && values[j] == values[i] && j - i < 0xFFFF) j++;
+            runs.append((char) (j - i)).append((char) (values[i] + offset));
+            i = j;
+        }
+        StringBuilder line = new StringBuilder();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < runs.length(); i++) {
+            char c = runs.charAt(i);
+            if (c >= 0x20 && c < 0x7F && c != '"' && c != '\\') line.append(c);
+            else if (c < 0x100) line.append(String.format("\\%03o", (int) c));
+            else line.append(String.format("\\u%04x", (int) c));
+            if (line.length() >= 64) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+        }
+        if (line.length() > 0 || lines.isEmpty()) lines.add(line.toString());
+        for (int i = 0; i < lines.size(); i++) {
+            out.append("        \"").append(lines.get(i)).append('"').append(i + 1 < lines.size() ? " +\n" : ");\n\n");
+        }
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.*;
+
+/**
+ * ScannerMetrics - Counters kept by ManualScanner and Yylex while scanning
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Everything is a primitive array indexed by ordinal, so counting a token
+ * is two array increments and never allocates. Tracked: tokens per type,
+ * token lengths per type (power-of-two buckets), errors per ErrorType,
+ * input consumed, line breaks and nanoseconds per Phase. Counters are
+ * longs, so totals added up over many files or a multi-GB input do not
+ * overflow.
+ *
+ * A ScannerMetrics belongs to one scanner and is not synchronized: read it
+ * or take a snapshot() on the scanning thread, or after the scan has
+ * finished and been joined. Another thread reading while a scan runs may
+ * see any mix of old and new values.
+ * toJson() writes one line that dashboards can read without parsing the
+ * printStatistics() report.
+ */
+public class ScannerMetrics {
+
+    /** Where scan time goes; phases do not overlap. */
+    public enum Phase {
+        READ,       // filling buffers from a reader or channel, mapping files
+        SCAN,       // running the lexer
+        MERGE       // joining the chunks of a parallel scan
+    }
+
+    /** Bucket b counts lengths in [2^(b-1), 2^b); bucket 0 counts empty lexemes (EOF). */
+    public static final int LENGTH_BUCKETS = 32;
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final ErrorHandler.ErrorType[] ERROR_TYPES = ErrorHandler.ErrorType.values();
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] tokenCounts;
+    private final long[] lengthHistogram;
+    private final long[] errorCounts;
+    private final long[] phaseNanos;
+    private long bytes;
+    private long lines;
+
+    public ScannerMetrics() {
+        this.tokenCounts = new long[TOKEN_TYPES.length];
+        this.lengthHistogram = new long[TOKEN_TYPES.length * LENGTH_BUCKETS];
+        this.errorCounts = new long[ERROR_TYPES.length];
+        this.phaseNanos = new long[PHASES.length];
+    }
+
+    private ScannerMetrics(ScannerMetrics other) {
+        this.tokenCounts = other.tokenCounts.clone();
+        this.lengthHistogram = other.lengthHistogram.clone();
+        this.errorCounts = other.errorCounts.clone();
+        this.phaseNanos = other.phaseNanos.clone();
+        this.bytes = other.bytes;
+        this.lines = other.lines;
+    }
+
+    // Called by the scanners on the hot path
+    void countToken(TokenType type, int length) {
+        int t = type.ordinal();
+        tokenCounts[t]++;
+        lengthHistogram[t * LENGTH_BUCKETS + (32 - Integer.numberOfLeadingZeros(length))]++;
+    }
+
+    void countError(ErrorHandler.ErrorType type) { errorCounts[type.ordinal()]++; }
+    void addErrors(ErrorHandler.ErrorType type, int count) { errorCounts[type.ordinal()] += count; }
+    void countLine() { lines++; }
+    void addLines(long count) { lines += count; }
+    void addBytes(long count) { bytes += count; }
+
+    /** Adds time spent in a phase; callers may also time their own READ work. */
+    public void addNanos(Phase phase, long nanos) { phaseNanos[phase.ordinal()] += nanos; }
+
+    /** Adds another scanner's counts to these, e.g. to total several files. */
+    public void add(ScannerMetrics other) {
+        for (int i = 0; i < tokenCounts.length; i++) tokenCounts[i] += other.tokenCounts[i];
+        for (int i = 0; i < lengthHistogram.length; i++) lengthHistogram[i] += other.lengthHistogram[i];
+        for (int i = 0; i < errorCounts.length; i++) errorCounts[i] += other.errorCounts[i];
+        for (int i = 0; i < phaseNanos.length; i++) phaseNanos[i] += other.phaseNanos[i];
+        bytes += other.bytes;
+        lines += other.lines;
+    }
+
+    /** Sets every counter back to zero, e.g. when the scanner is reset. */
+    public void clear() {
+        Arrays.fill(tokenCounts, 0);
+        Arrays.fill(lengthHistogram, 0);
+        Arrays.fill(errorCounts, 0);
+        Arrays.fill(phaseNanos, 0);
+        bytes = 0;
+        lines = 0;
+    }
+
+    /** A copy of the current counts, which later scanning does not change. */
+    public ScannerMetrics snapshot() { return new ScannerMetrics(this); }
+
+    /** Counts accumulated since an earlier snapshot of these metrics. */
+    public ScannerMetrics since(ScannerMetrics earlier) {
+        ScannerMetrics delta = new ScannerMetrics(this);
+        for (int i = 0; i < tokenCounts.length; i++) delta.tokenCounts[i] -= earlier.tokenCounts[i];
+        for (int i = 0; i < lengthHistogram.length; i++) delta.lengthHistogram[i] -= earlier.lengthHistogram[i];
+        for (int i = 0; i < errorCounts.length; i++) delta.errorCounts[i] -= earlier.errorCounts[i];
+        for (int i = 0; i < phaseNanos.length; i++) delta.phaseNanos[i] -= earlier.phaseNanos[i];
+        delta.bytes -= earlier.bytes;
+        delta.lines -= earlier.lines;
+        return delta;
+    }
+
+    public long getTokenCount(TokenType type) { return tokenCounts[type.ordinal()]; }
+    public long getErrorCount(ErrorHandler.ErrorType type) { return errorCounts[type.ordinal()]; }
+    public long getNanos(Phase phase) { return phaseNanos[phase.ordinal()]; }
+    /** Input consumed: bytes for byte input, chars for text (the same for ASCII source). */
+    public long getBytes() { return bytes; }
+    /** Line breaks ('\n') consumed. */
+    public long getLines() { return lines; }
+
+    /** Tokens of the given type whose length falls in the given bucket (see LENGTH_BUCKETS). */
+    public long getLengthCount(TokenType type, int bucket) {
+        return lengthHistogram[type.ordinal() * LENGTH_BUCKETS + bucket];
+    }
+
+    public long getTotalTokens() {
+        long total = 0;
+        for (long count : tokenCounts) total += count;
+        return total;
+    }
+
+    public long getTotalErrors() {
+        long total = 0;
+        for (long count : errorCounts) total += count;
+        return total;
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos) total += nanos;
+        return total;
+    }
+
+    public double getTokensPerSecond() {
+        long nanos = getTotalNanos();
+        return nanos == 0 ? 0 : getTotalTokens() * 1e9 / nanos;
+    }
+
+    public double getMegabytesPerSecond() {
+        long nanos = getTotalNanos();
+        return nanos == 0 ? 0 : bytes * 1e3 / nanos;
+    }
+
+    /** Token counts by type, every type present. */
+    public Map<TokenType, Long> getTokenCounts() {
+        Map<TokenType, Long> counts = new EnumMap<>(TokenType.class);
+        for (TokenType type : TOKEN_TYPES) counts.put(type, tokenCounts[type.ordinal()]);
+        return counts;
+    }
+
+    /**
+     * One line of JSON: totals, rates, and per-type objects that list only
+     * nonzero entries. Histograms are arrays trimmed after the last nonzero
+     * bucket.
+     */
+    public String toJson() {
+        StringBuilder out = new StringBuilder(512);
+        out.append("{\"bytes\":").append(bytes)
+           .append(",\"lines\":").append(lines)
+           .append(",\"tokens\":").append(getTotalTokens())
+           .append(",\"errors\":").append(getTotalErrors())
+           .append(",\"nanos\":").append(getTotalNanos())
+           .append(",\"tokens_per_second\":").append(String.format(Locale.ROOT, "%.1f", getTokensPerSecond()))
+           .append(",\"mb_per_second\":").append(String.format(Locale.ROOT, "%.3f", getMegabytesPerSecond()));
+
+        out.append(",\"phase_nanos\":{");
+        for (Phase phase : PHASES) {
+            if (phase.ordinal() > 0) out.append(',');
+            out.append('"').append(phase.name().toLowerCase(Locale.ROOT)).append("\":").append(phaseNanos[phase.ordinal()]);
+        }
+
+        out.append("},\"token_counts\":{");
+        boolean first = true;
+        for (TokenType type : TOKEN_TYPES) {
+            if (tokenCounts[type.ordinal()] == 0) continue;
+            if (!first) out.append(',');
+            out.append('"').append(type).append("\":").append(tokenCounts[type.ordinal()]);
+            first = false;
+        }
+
+        out.append("},\"token_lengths\":{");
+        first = true;
+        for (TokenType type : TOKEN_TYPES) {
+            int base = type.ordinal() * LENGTH_BUCKETS;
+            int last = LENGTH_BUCKETS - 1;
+            while (last >= 0 && lengthHistogram[base + last] == 0) last--;
+            if (last < 0) continue;
+            if (!first) out.append(',');
+            out.append('"').append(type).append("\":[");
+            for (int b = 0; b <= last; b++) {
+                if (b > 0) out.append(',');
+                out.append(lengthHistogram[base + b]);
+            }
+            out.append(']');
+            first = false;
+        }
+
+        out.append("},\"error_counts\":{");
+        first = true;
+        for (ErrorHandler.ErrorType type : ERROR_TYPES) {
+            if (errorCounts[type.ordinal()] == 0) continue;
+            if (!first) out.append(',');
+            out.append('"').append(type).append("\":").append(errorCounts[type.ordinal()]);
+            first = false;
+        }
+        return out.append("}}").toString();
+    }
+
+    @Override
+    public String toString() { return toJson(); }
+}
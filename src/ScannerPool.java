@@ -0,0 +1,104 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * ScannerPool - Per-thread reuse of scanner instances for many small inputs
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * A new scanner allocates its token arrays, symbol table, error handler and
+ * (for Yylex) a 16 KB buffer, which dominates the cost of lexing a short
+ * snippet. The acquire methods hand out an idle scanner of the calling
+ * thread, reset to the input, and release() gives it back; once every
+ * thread has its scanners, scanning allocates little beyond what the
+ * caller keeps (symbol names, Tokens from the streaming APIs).
+ *
+ * Each thread keeps at most MAX_IDLE idle scanners of each kind, so there
+ * is no locking; a scanner released on another thread joins that thread's
+ * pool. Everything read from a scanner (tokens, symbol table, errors) is
+ * reused by its next acquire, so copy what must outlive release(). Settings
+ * made on a scanner (error sink and limit, lazy positions) are put back to
+ * a new scanner's on release, so an acquired one behaves as new. A
+ * released scanner drops its input, and one whose last input was large is
+ * not kept, so one big file does not pin its text or arrays for the life of
+ * the thread. A Yylex buffer grown by a long lexeme is shrunk back.
+ */
+public final class ScannerPool {
+
+    public static final int MAX_IDLE = 4;
+    // Scanners that last produced more tokens than this are left to the GC
+    private static final int MAX_RETAINED_TOKENS = 1 << 16;
+
+    private static final ThreadLocal<ArrayDeque<ManualScanner>> MANUAL = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<ArrayDeque<Yylex>> YYLEX = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private ScannerPool() { }
+
+    /** A ManualScanner ready to scan source, as new ManualScanner(source) but reused. */
+    public static ManualScanner manual(String source) {
+        ManualScanner scanner = idleManual();
+        return scanner != null ? scanner.reset(source) : new ManualScanner(source);
+    }
+
+    public static ManualScanner manual(ByteBuffer bytes) {
+        ManualScanner scanner = idleManual();
+        return scanner != null ? scanner.reset(bytes) : new ManualScanner(bytes);
+    }
+
+    /** A Yylex ready to lex source, as new Yylex(source) but reused. */
+    public static Yylex yylex(String source) {
+        Yylex scanner = idleYylex();
+        return scanner != null ? scanner.reset(source) : new Yylex(source);
+    }
+
+    public static Yylex yylex(ByteBuffer bytes) {
+        Yylex scanner = idleYylex();
+        return scanner != null ? scanner.reset(bytes) : new Yylex(bytes);
+    }
+
+    /**
+     * Returns a scanner for reuse by this thread; it must not be used
+     * afterwards. Releasing the same scanner twice is an error.
+     */
+    public static void release(ManualScanner scanner) {
+        if (scanner.pooled) throw new IllegalStateException("Scanner already released");
+        scanner.pooled = true;
+        ArrayDeque<ManualScanner> idle = MANUAL.get();
+        if (idle.size() < MAX_IDLE && scanner.getTokens().size() <= MAX_RETAINED_TOKENS
+                && scanner.getSymbolTable().size() <= MAX_RETAINED_TOKENS) {
+            scanner.clearInput();
+            restoreDefaults(scanner.getErrorHandler());
+            scanner.setLazyPositions(false);
+            idle.addLast(scanner);
+        }
+    }
+
+    public static void release(Yylex scanner) {
+        if (scanner.pooled) throw new IllegalStateException("Scanner already released");
+        scanner.pooled = true;
+        ArrayDeque<Yylex> idle = YYLEX.get();
+        if (idle.size() < MAX_IDLE && scanner.getMetrics().getTotalTokens() <= MAX_RETAINED_TOKENS
+                && scanner.getSymbolTable().size() <= MAX_RETAINED_TOKENS) {
+            scanner.clearInput();
+            restoreDefaults(scanner.getErrorHandler());
+            idle.addLast(scanner);
+        }
+    }
+
+    // reset() keeps a scanner's settings, so a released one gets a new scanner's back
+    private static void restoreDefaults(ErrorHandler errorHandler) {
+        errorHandler.setSink(ErrorHandler.STDERR);
+        errorHandler.setMaxErrors(ErrorHandler.DEFAULT_MAX_ERRORS);
+    }
+
+    private static ManualScanner idleManual() {
+        ManualScanner scanner = MANUAL.get().pollLast();
+        if (scanner != null) scanner.pooled = false;
+        return scanner;
+    }
+
+    private static Yylex idleYylex() {
+        Yylex scanner = YYLEX.get().pollLast();
+        if (scanner != null) scanner.pooled = false;
+        return scanner;
+    }
+}
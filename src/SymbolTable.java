@@ -3,18 +3,23 @@ import java.util.*;
 /**
  * SymbolTable class for storing identifier information
  * CS4031 - Compiler Construction Assignment 01
- * 
+ *
  * Stores: identifier name, type, first occurrence, frequency
+ *
+ * Identifiers get dense int IDs in order of first occurrence. Lookup is an
+ * open-addressing hash table that hashes and compares directly against a
+ * character range of the source, so a repeated identifier costs no
+ * allocation; only the first occurrence creates the name String and entry.
  */
 public class SymbolTable {
-    
+
     public static class SymbolEntry {
         private String name;
         private String type;
         private int firstOccurrenceLine;
         private int firstOccurrenceColumn;
         private int frequency;
-        
+
         public SymbolEntry(String name, String type, int line, int column) {
             this.name = name;
             this.type = type;
@@ -22,60 +27,220 @@ public class SymbolTable {
             this.firstOccurrenceColumn = column;
             this.frequency = 1;
         }
-        
+
         public String getName() { return name; }
         public String getType() { return type; }
         public int getFirstOccurrenceLine() { return firstOccurrenceLine; }
         public int getFirstOccurrenceColumn() { return firstOccurrenceColumn; }
         public int getFrequency() { return frequency; }
-        
+
         public void setType(String type) { this.type = type; }
         public void incrementFrequency() { this.frequency++; }
-        
+
         @Override
         public String toString() {
             return String.format("%-20s %-15s Line: %-5d Col: %-5d Frequency: %d",
-                    name, type != null ? type : "unknown", firstOccurrenceLine, 
+                    name, type != null ? type : "unknown", firstOccurrenceLine,
                     firstOccurrenceColumn, frequency);
         }
     }
-    
-    private Map<String, SymbolEntry> symbols;
-    
+
+    private static final int INITIAL_SLOTS = 64;
+    // Larger indexes are dropped by clear() rather than zeroed and kept
+    private static final int MAX_RETAINED_SLOTS = 1 << 12;
+
+    // entries[id]; slots hold id + 1 (0 = empty) and slotHashes the full hash
+    private List<SymbolEntry> entries;
+    private int[] slots;
+    private int[] slotHashes;
+    private int slotShift;
+
     public SymbolTable() {
-        symbols = new LinkedHashMap<>();
+        entries = new ArrayList<>();
+        allocateSlots(INITIAL_SLOTS);
+    }
+
+    /**
+     * Empty table for about expectedSize entries added with addEntry, e.g.
+     * when loading a saved table. The hash index is only built by the first
+     * lookup, so a table that is just printed or iterated never needs one.
+     */
+    SymbolTable(int expectedSize) {
+        entries = new ArrayList<>(expectedSize);
     }
-    
-    public void addSymbol(String name, String type, int line, int column) {
-        if (symbols.containsKey(name)) {
-            symbols.get(name).incrementFrequency();
+
+    /** Removes every symbol; IDs start again at 0. The index keeps its size unless it grew large. */
+    public void clear() {
+        entries.clear();
+        if (slots == null) return;
+        if (slots.length > MAX_RETAINED_SLOTS) {
+            allocateSlots(INITIAL_SLOTS);
         } else {
-            symbols.put(name, new SymbolEntry(name, type, line, column));
+            Arrays.fill(slots, 0);
+        }
+    }
+
+    public int addSymbol(String name, String type, int line, int column) {
+        return addSymbol(name, 0, name.length(), type, line, column);
+    }
+
+    /**
+     * Records an occurrence of the identifier source[start, end) and returns
+     * its symbol ID. Allocates only when the identifier is new.
+     */
+    public int addSymbol(CharSequence source, int start, int end, String type, int line, int column) {
+        if (slots == null) buildIndex();
+        int hash = hash(source, start, end);
+        int mask = slots.length - 1;
+        int slot = slotOf(hash);
+        while (slots[slot] != 0) {
+            if (slotHashes[slot] == hash) {
+                SymbolEntry entry = entries.get(slots[slot] - 1);
+                if (nameEquals(entry.name, source, start, end)) {
+                    entry.frequency++;
+                    return slots[slot] - 1;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = entries.size();
+        entries.add(new SymbolEntry(source.subSequence(start, end).toString(), type, line, column));
+        slots[slot] = id + 1;
+        slotHashes[slot] = hash;
+        if (entries.size() * 2 > slots.length) rehash();
+        return id;
+    }
+
+    /**
+     * Adds another table's entries in its insertion order, shifting first
+     * occurrences down by lineOffset lines. Merging the tables of consecutive
+     * chunks in order gives the same table as one sequential scan: the
+     * earliest first occurrence wins and frequencies are summed.
+     * Returns the ID in this table of each of other's symbol IDs.
+     */
+    public int[] merge(SymbolTable other, int lineOffset) {
+        int[] ids = new int[other.entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            SymbolEntry entry = other.entries.get(i);
+            int id = find(entry.name);
+            if (id >= 0) {
+                entries.get(id).frequency += entry.frequency;
+            } else {
+                id = addEntry(entry.name, entry.type, entry.firstOccurrenceLine + lineOffset,
+                        entry.firstOccurrenceColumn, entry.frequency);
+            }
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    /** Adds a symbol that is not in the table yet with an already known frequency. */
+    int addEntry(String name, String type, int line, int column, int frequency) {
+        int id = entries.size();
+        SymbolEntry entry = new SymbolEntry(name, type, line, column);
+        entry.frequency = frequency;
+        entries.add(entry);
+        if (slots != null) {
+            insert(id, name.hashCode());
+            if (entries.size() * 2 > slots.length) rehash();
+        }
+        return id;
+    }
+
+    public boolean contains(String name) { return find(name) >= 0; }
+    public SymbolEntry getSymbol(String name) {
+        int id = find(name);
+        return id >= 0 ? entries.get(id) : null;
+    }
+    public SymbolEntry getSymbol(int id) { return entries.get(id); }
+    public Collection<SymbolEntry> getAllSymbols() { return Collections.unmodifiableList(entries); }
+    public int size() { return entries.size(); }
+
+    private int find(String name) {
+        if (slots == null) buildIndex();
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = slotOf(hash); slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slotHashes[slot] == hash && entries.get(slots[slot] - 1).name.equals(name)) return slots[slot] - 1;
         }
+        return -1;
+    }
+
+    private void allocateSlots(int slotCount) {
+        slots = new int[slotCount];
+        slotHashes = new int[slotCount];
+        slotShift = 32 - Integer.numberOfTrailingZeros(slotCount);
+    }
+
+    // The name is known to be new, so only an empty slot is looked for
+    private void insert(int id, int hash) {
+        int mask = slots.length - 1;
+        int slot = slotOf(hash);
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = id + 1;
+        slotHashes[slot] = hash;
+    }
+
+    private void buildIndex() {
+        int slotCount = INITIAL_SLOTS;
+        while (slotCount < entries.size() * 2) slotCount <<= 1;
+        allocateSlots(slotCount);
+        for (int id = 0; id < entries.size(); id++) insert(id, entries.get(id).name.hashCode());
     }
-    
-    public boolean contains(String name) { return symbols.containsKey(name); }
-    public SymbolEntry getSymbol(String name) { return symbols.get(name); }
-    public Collection<SymbolEntry> getAllSymbols() { return symbols.values(); }
-    public int size() { return symbols.size(); }
-    
+
+    private void rehash() {
+        int[] oldSlots = slots;
+        int[] oldHashes = slotHashes;
+        slots = new int[oldSlots.length * 2];
+        slotHashes = new int[oldSlots.length * 2];
+        slotShift--;
+        int mask = slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] == 0) continue;
+            int slot = slotOf(oldHashes[i]);
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = oldSlots[i];
+            slotHashes[slot] = oldHashes[i];
+        }
+    }
+
+    // Same value as String.hashCode(), so String lookups can use the cached hash
+    static int hash(CharSequence source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + source.charAt(i);
+        return h;
+    }
+
+    // Fibonacci hashing: the top bits of hash * 2^32/phi. Identifiers like
+    // Item1, Item2, ... have consecutive String hashes, which would otherwise
+    // fill runs of adjacent slots and make linear probing degrade.
+    private int slotOf(int hash) { return (hash * 0x9E3779B9) >>> slotShift; }
+
+    static boolean nameEquals(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
     public void printTable() {
         System.out.println("\n" + "=".repeat(80));
         System.out.println("SYMBOL TABLE");
         System.out.println("=".repeat(80));
-        System.out.printf("%-20s %-15s %-12s %-10s %s%n", 
+        System.out.printf("%-20s %-15s %-12s %-10s %s%n",
                 "Identifier", "Type", "First Line", "First Col", "Frequency");
         System.out.println("-".repeat(80));
-        
-        if (symbols.isEmpty()) {
+
+        if (entries.isEmpty()) {
             System.out.println("  (No identifiers found)");
         } else {
-            for (SymbolEntry entry : symbols.values()) {
+            for (SymbolEntry entry : entries) {
                 System.out.println(entry);
             }
         }
         System.out.println("-".repeat(80));
-        System.out.println("Total unique identifiers: " + symbols.size());
+        System.out.println("Total unique identifiers: " + entries.size());
         System.out.println("=".repeat(80));
     }
 }
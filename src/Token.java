@@ -1,3 +1,5 @@
+import java.io.IOException;
+
 /**
  * Token class representing a lexical token
  * CS4031 - Compiler Construction Assignment 01
@@ -5,33 +7,92 @@
  */
 public class Token {
     private TokenType type;
-    private String lexeme;
+    private CharSequence lexeme;
     private int lineNumber;
     private int columnNumber;
+    private int symbolId;
     
-    public Token(TokenType type, String lexeme, int lineNumber, int columnNumber) {
+    /** The lexeme may be a view (e.g. a CharSlice); it is materialized on first use. */
+    public Token(TokenType type, CharSequence lexeme, int lineNumber, int columnNumber) {
+        this(type, lexeme, lineNumber, columnNumber, -1);
+    }
+    
+    /** symbolId is the identifier's ID in the scanner's SymbolTable, or -1. */
+    public Token(TokenType type, CharSequence lexeme, int lineNumber, int columnNumber, int symbolId) {
         this.type = type;
         this.lexeme = lexeme;
         this.lineNumber = lineNumber;
         this.columnNumber = columnNumber;
+        this.symbolId = symbolId;
     }
     
     public TokenType getType() { return type; }
-    public String getLexeme() { return lexeme; }
+    public String getLexeme() {
+        if (lexeme != null && !(lexeme instanceof String)) lexeme = lexeme.toString();
+        return (String) lexeme;
+    }
     public int getLineNumber() { return lineNumber; }
     public int getColumnNumber() { return columnNumber; }
+    public int getSymbolId() { return symbolId; }
     
     @Override
     public String toString() {
-        return "<" + type + ", \"" + escapeString(lexeme) + "\", Line: " + lineNumber + ", Col: " + columnNumber + ">";
+        StringBuilder out = new StringBuilder(lexeme != null ? lexeme.length() + 40 : 40);
+        try {
+            appendTo(out);
+        } catch (IOException e) {
+            throw new AssertionError(e);  // StringBuilder does not throw
+        }
+        return out.toString();
+    }
+    
+    /** Appends the toString() form to out without building it as a String first. */
+    public void appendTo(Appendable out) throws IOException {
+        appendTo(out, type, lexeme, 0, lexeme != null ? lexeme.length() : 0, lineNumber, columnNumber);
+    }
+    
+    /** Appends <TYPE, "lexeme", Line: n, Col: m> for the lexeme source[start, end), e.g. for TokenStream. */
+    static void appendTo(Appendable out, TokenType type, CharSequence source, int start, int end,
+                         int line, int column) throws IOException {
+        out.append('<').append(String.valueOf(type)).append(", \"");
+        appendEscaped(out, source, start, end);
+        out.append("\", Line: ");
+        appendInt(out, line);
+        out.append(", Col: ");
+        appendInt(out, column);
+        out.append('>');
+    }
+    
+    // Escapes \ " \n \r \t; lexemes almost never contain them, so runs are appended whole
+    private static void appendEscaped(Appendable out, CharSequence source, int start, int end) throws IOException {
+        int run = start;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c > '\\' || (c != '\\' && c != '"' && c != '\n' && c != '\r' && c != '\t')) continue;
+            out.append(source, run, i).append('\\');
+            switch (c) {
+                case '\n': out.append('n'); break;
+                case '\r': out.append('r'); break;
+                case '\t': out.append('t'); break;
+                default: out.append(c);
+            }
+            run = i + 1;
+        }
+        out.append(source, run, end);
     }
     
-    private String escapeString(String str) {
-        if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+    /** Appends the decimal digits of value without allocating. */
+    static void appendInt(Appendable out, int value) throws IOException {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                out.append("-2147483648");
+                return;
+            }
+            out.append('-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) divisor *= 10;
+        for (; divisor > 0; divisor /= 10) out.append((char) ('0' + value / divisor % 10));
     }
 }
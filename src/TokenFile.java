@@ -0,0 +1,571 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * TokenFile - Versioned binary file format for a saved scan result
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * A file holds the text that lexemes point into, the tokens, the symbol
+ * table and the errors, so a later tool can load a result instead of
+ * scanning the source again. Layout (version 1, big-endian):
+ *
+ *   header   magic "POOH", u16 version, u16 reserved
+ *   text     the scanned source, or a pool of lexemes when tokens were
+ *            written without one; one byte per char when every char fits
+ *            in ISO-8859-1, UTF-16 otherwise
+ *   tokens   per token: u8 type ordinal (bit 7 set when a symbol ID
+ *            follows), then varints: line delta, column (delta on the same
+ *            line), start - end of previous token, length, [symbol ID]
+ *   symbols  count, then name, type, line, column, frequency per entry
+ *   errors   total per ErrorType, record count, then per record: u8 type
+ *            (bit 7 set when the lexeme is in the source), line delta,
+ *            column, lexeme as offset delta and length or as a string,
+ *            and custom reason (or "")
+ *   trailer  offsets and sizes of the sections, flags, magic
+ *
+ * Deltas are zigzag varints, so ordinary token streams take a few bytes
+ * per token. Sections are located through the trailer, which lets the
+ * Writer stream: the source can come first, or lexemes can be pooled while
+ * tokens arrive and written after them. open() maps the file; the source
+ * is a view of the mapping and tokens are decoded only when asked for.
+ *
+ * Usage: java TokenFile save <input.pooh> <output.ptok>
+ *        java TokenFile print <file.ptok>
+ *        java TokenFile check <input.pooh>
+ */
+public class TokenFile {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x504F4F48;   // "POOH"
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 6 * 8 + 4 + 4;
+    private static final int FLAG_LATIN1 = 1;       // text is one byte per char
+    private static final int FLAG_POOLED = 2;       // text is a lexeme pool, not the source
+    private static final int HAS_SYMBOL = 0x80;
+    private static final int IN_SOURCE = 0x80;
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final ErrorHandler.ErrorType[] ERROR_TYPES = ErrorHandler.ErrorType.values();
+
+    /**
+     * Writes a result section by section: writeSource (optional), tokens,
+     * writeSymbols, writeErrors, close. Tokens given as offsets index the
+     * source; tokens given with a lexeme have it appended to a pool that is
+     * written on close, in which case no source may be written.
+     */
+    public static class Writer implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+        private static final int STATE_SOURCE = 0, STATE_TOKENS = 1, STATE_SYMBOLS = 2, STATE_ERRORS = 3, STATE_CLOSED = 4;
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int bufferPos;
+        private long written;
+        private int state = STATE_SOURCE;
+
+        private long textOffset = -1;
+        private long textLength;
+        private boolean latin1;
+        private CharSequence source;
+        private StringBuilder pool;
+        private long tokensOffset = -1;
+        private long tokenCount;
+        private long symbolsOffset = -1;
+        private long errorsOffset = -1;
+
+        private int prevLine;
+        private int prevColumn;
+        private int prevEnd;
+
+        public Writer(OutputStream out) throws IOException {
+            this.out = out;
+            writeInt(MAGIC);
+            writeShort(VERSION);
+            writeShort(0);
+        }
+
+        /** Embeds the source that token offsets index into; must come before any token. */
+        public void writeSource(CharSequence source) throws IOException {
+            if (state != STATE_SOURCE || textOffset >= 0) throw new IllegalStateException("Source must be written once, before tokens");
+            this.source = source;
+            textOffset = written;
+            textLength = source.length();
+            latin1 = writeText(source);
+        }
+
+        /** Appends a token whose lexeme is source[start, start + length). */
+        public void writeToken(TokenType type, int start, int length, int line, int column, int symbolId) throws IOException {
+            if (state > STATE_TOKENS) throw new IllegalStateException("Tokens must come before symbols and errors");
+            if (state == STATE_SOURCE) {
+                state = STATE_TOKENS;
+                tokensOffset = written;
+            }
+            if (bufferPos > BUFFER_SIZE - 32) flushBuffer();
+            int lineDelta = line - prevLine;
+            writeByte(type.ordinal() | (symbolId != -1 ? HAS_SYMBOL : 0));
+            writeVarint(zigzag(lineDelta));
+            writeVarint(zigzag(column - (lineDelta == 0 ? prevColumn : 0)));
+            writeVarint(zigzag(start - prevEnd));
+            writeVarint(length);
+            if (symbolId != -1) writeVarint(zigzag(symbolId));
+            prevLine = line;
+            prevColumn = column;
+            prevEnd = start + length;
+            tokenCount++;
+        }
+
+        /** Appends a token, copying its lexeme into the pool. */
+        public void writeToken(Token token) throws IOException {
+            if (pool == null) {
+                if (textOffset >= 0) throw new IllegalStateException("Tokens with lexemes cannot be written after a source");
+                pool = new StringBuilder();
+            }
+            String lexeme = token.getLexeme();
+            int start = pool.length();
+            pool.append(lexeme);
+            writeToken(token.getType(), start, lexeme.length(), token.getLineNumber(), token.getColumnNumber(), token.getSymbolId());
+        }
+
+        /** Appends every token of the stream; its source should have been written with writeSource. */
+        public void writeTokens(TokenStream tokens) throws IOException {
+            for (int i = 0; i < tokens.size(); i++) {
+                writeToken(tokens.getType(i), tokens.getStart(i), tokens.getLength(i),
+                           tokens.getLine(i), tokens.getColumn(i), tokens.getSymbolId(i));
+            }
+        }
+
+        public void writeSymbols(SymbolTable symbols) throws IOException {
+            if (state > STATE_TOKENS) throw new IllegalStateException("Symbols must be written once, before errors");
+            symbolsSection(symbols);
+        }
+
+        private void symbolsSection(SymbolTable symbols) throws IOException {
+            if (tokensOffset < 0) tokensOffset = written;
+            state = STATE_SYMBOLS;
+            symbolsOffset = written;
+            writeVarint(symbols.size());
+            for (SymbolTable.SymbolEntry entry : symbols.getAllSymbols()) {
+                writeString(entry.getName());
+                writeString(entry.getType() != null ? entry.getType() : "");
+                writeVarint(entry.getFirstOccurrenceLine());
+                writeVarint(entry.getFirstOccurrenceColumn());
+                writeVarint(entry.getFrequency());
+            }
+        }
+
+        /**
+         * Writes the recorded errors and the per-type totals, which also count
+         * unrecorded ones; an empty symbol table is written first if none was.
+         */
+        public void writeErrors(ErrorHandler errors) throws IOException {
+            if (state > STATE_SYMBOLS) throw new IllegalStateException("Errors must be written once");
+            if (symbolsOffset < 0) symbolsSection(new SymbolTable());
+            state = STATE_ERRORS;
+            errorsOffset = written;
+            for (ErrorHandler.ErrorType type : ERROR_TYPES) writeVarint(errors.getErrorCount(type));
+            List<ErrorHandler.LexicalError> records = errors.getErrors();
+            writeVarint(records.size());
+            int line = 0, offset = 0;
+            for (int i = 0; i < records.size(); i++) {
+                ErrorHandler.LexicalError error = records.get(i);
+                boolean inSource = source != null && errors.getSource(i) == source;
+                writeByte(error.getType().ordinal() | (inSource ? IN_SOURCE : 0));
+                writeVarint(zigzag(error.getLine() - line));
+                writeVarint(error.getColumn());
+                if (inSource) {
+                    writeVarint(zigzag(errors.getOffset(i) - offset));
+                    writeVarint(error.getLexeme().length());
+                    offset = errors.getOffset(i);
+                } else {
+                    writeString(error.getLexeme());
+                }
+                boolean custom = !error.getReason().equals(ErrorHandler.reason(error.getType(), error.getLexeme()));
+                writeString(custom ? error.getReason() : "");
+                line = error.getLine();
+            }
+        }
+
+        /** Writes the lexeme pool (if any) and the trailer, and closes the stream. */
+        @Override
+        public void close() throws IOException {
+            if (state == STATE_CLOSED) return;
+            if (tokensOffset < 0) tokensOffset = written;
+            if (errorsOffset < 0) writeErrors(new ErrorHandler(false));
+            int flags = 0;
+            if (pool != null) {
+                textOffset = written;
+                textLength = pool.length();
+                latin1 = writeText(pool);
+                flags |= FLAG_POOLED;
+            } else if (textOffset < 0) {
+                textOffset = written;
+                latin1 = true;
+            }
+            if (latin1) flags |= FLAG_LATIN1;
+            writeLong(textOffset);
+            writeLong(textLength);
+            writeLong(tokensOffset);
+            writeLong(tokenCount);
+            writeLong(symbolsOffset);
+            writeLong(errorsOffset);
+            writeInt(flags);
+            writeInt(MAGIC);
+            flushBuffer();
+            state = STATE_CLOSED;
+            out.close();
+        }
+
+        /** Writes text as ISO-8859-1 if every char fits, UTF-16 otherwise; returns true for ISO-8859-1. */
+        private boolean writeText(CharSequence text) throws IOException {
+            int length = text.length();
+            boolean oneByte = true;
+            for (int i = 0; i < length && oneByte; i++) oneByte = text.charAt(i) < 256;
+            for (int i = 0; i < length; i++) {
+                if (bufferPos > BUFFER_SIZE - 2) flushBuffer();
+                char c = text.charAt(i);
+                if (!oneByte) buffer[bufferPos++] = (byte) (c >>> 8);
+                buffer[bufferPos++] = (byte) c;
+            }
+            written += oneByte ? length : 2L * length;
+            return oneByte;
+        }
+
+        private void writeString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            if (bufferPos + bytes.length > BUFFER_SIZE) flushBuffer();
+            if (bytes.length > BUFFER_SIZE) {
+                out.write(bytes);
+            } else {
+                System.arraycopy(bytes, 0, buffer, bufferPos, bytes.length);
+                bufferPos += bytes.length;
+            }
+            written += bytes.length;
+        }
+
+        private void writeVarint(int value) throws IOException {
+            if (bufferPos > BUFFER_SIZE - 5) flushBuffer();
+            while ((value & ~0x7F) != 0) {
+                buffer[bufferPos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+                written++;
+            }
+            buffer[bufferPos++] = (byte) value;
+            written++;
+        }
+
+        private void writeByte(int value) throws IOException {
+            if (bufferPos == BUFFER_SIZE) flushBuffer();
+            buffer[bufferPos++] = (byte) value;
+            written++;
+        }
+
+        private void writeShort(int value) throws IOException {
+            writeByte(value >>> 8);
+            writeByte(value);
+        }
+
+        private void writeInt(int value) throws IOException {
+            writeShort(value >>> 16);
+            writeShort(value);
+        }
+
+        private void writeLong(long value) throws IOException {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, bufferPos);
+            bufferPos = 0;
+        }
+    }
+
+    private final ByteBuffer data;
+    private final CharSequence text;
+    private final ByteBuffer textBytes;
+    private final boolean pooled;
+    private final int tokensOffset;
+    private final int tokenCount;
+    private final int symbolsOffset;
+    private final int errorsOffset;
+    private final int errorsEnd;
+    private TokenStream tokens;
+    private SymbolTable symbolTable;
+    private ErrorHandler errorHandler;
+
+    private TokenFile(ByteBuffer data) throws IOException {
+        this.data = data;
+        int size = data.limit();
+        if (size < HEADER_SIZE + TRAILER_SIZE || data.getInt(0) != MAGIC || data.getInt(size - 4) != MAGIC) {
+            throw new IOException("Not a token file");
+        }
+        int version = data.getShort(4);
+        if (version != VERSION) throw new IOException("Unsupported token file version " + version);
+
+        int trailer = size - TRAILER_SIZE;
+        int textOffset = section(data.getLong(trailer), size);
+        long textLength = data.getLong(trailer + 8);
+        this.tokensOffset = section(data.getLong(trailer + 16), size);
+        this.tokenCount = Math.toIntExact(data.getLong(trailer + 24));
+        this.symbolsOffset = section(data.getLong(trailer + 32), size);
+        this.errorsOffset = section(data.getLong(trailer + 40), size);
+        int flags = data.getInt(trailer + 48);
+        this.pooled = (flags & FLAG_POOLED) != 0;
+        this.errorsEnd = pooled ? textOffset : trailer;
+        if (tokensOffset > symbolsOffset || symbolsOffset > errorsOffset || errorsOffset > errorsEnd) {
+            throw new IOException("Corrupt token file: sections out of order");
+        }
+
+        if ((flags & FLAG_LATIN1) != 0) {
+            this.text = new ByteSource(data, textOffset, Math.toIntExact(textLength));
+            this.textBytes = data.slice(textOffset, Math.toIntExact(textLength));
+        } else {
+            this.text = data.slice(textOffset, Math.toIntExact(2 * textLength)).asCharBuffer();
+            this.textBytes = null;
+        }
+    }
+
+    private static int section(long offset, int size) throws IOException {
+        if (offset < HEADER_SIZE || offset > size - TRAILER_SIZE) throw new IOException("Corrupt token file: section at " + offset);
+        return (int) offset;
+    }
+
+    /** Maps a token file read-only; sections are decoded on first use. */
+    public static TokenFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Token file larger than 2 GB: " + path);
+            return new TokenFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /** Reads a token file from bytes already in memory. */
+    public static TokenFile read(ByteBuffer bytes) throws IOException {
+        return new TokenFile(bytes.slice());
+    }
+
+    /** Saves a finished scan: the tokens' source, the tokens, symbols and errors. */
+    public static void write(Path path, TokenStream tokens, SymbolTable symbols, ErrorHandler errors) throws IOException {
+        try (Writer writer = new Writer(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            writer.writeSource(tokens.getSource());
+            writer.writeTokens(tokens);
+            writer.writeSymbols(symbols);
+            writer.writeErrors(errors);
+        }
+    }
+
+    public static void write(Path path, ManualScanner scanner) throws IOException {
+        write(path, scanner.getTokens(), scanner.getSymbolTable(), scanner.getErrorHandler());
+    }
+
+    /** The embedded source, or the lexeme pool if the tokens were written without one; a view of the file. */
+    public CharSequence getText() { return text; }
+    public boolean isPooled() { return pooled; }
+    // The text's bytes when it is stored one byte per char, else null
+    ByteBuffer getTextBytes() { return textBytes; }
+    public int getTokenCount() { return tokenCount; }
+
+    /** The tokens, decoded on first call; their lexemes are views of getText(). */
+    public TokenStream getTokens() {
+        if (tokens == null) {
+            TokenStream decoded = new TokenStream(text);
+            Section in = new Section(tokensOffset, symbolsOffset);
+            int line = 0, column = 0, end = 0;
+            for (int i = 0; i < tokenCount; i++) {
+                int head = in.u8();
+                int lineDelta = unzigzag(in.varint());
+                line += lineDelta;
+                column = unzigzag(in.varint()) + (lineDelta == 0 ? column : 0);
+                int start = unzigzag(in.varint()) + end;
+                int length = in.varint();
+                int symbolId = (head & HAS_SYMBOL) != 0 ? unzigzag(in.varint()) : -1;
+                decoded.add(TOKEN_TYPES[head & ~HAS_SYMBOL], start, length, line, column, symbolId);
+                end = start + length;
+            }
+            tokens = decoded;
+        }
+        return tokens;
+    }
+
+    public SymbolTable getSymbolTable() {
+        if (symbolTable == null) {
+            Section in = new Section(symbolsOffset, errorsOffset);
+            int count = in.varint();
+            SymbolTable symbols = new SymbolTable(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.string();
+                String type = in.string();
+                int line = in.varint();
+                int column = in.varint();
+                symbols.addEntry(name, type.isEmpty() ? null : type, line, column, in.varint());
+            }
+            symbolTable = symbols;
+        }
+        return symbolTable;
+    }
+
+    /** The saved errors in a handler that does not print them. */
+    public ErrorHandler getErrorHandler() {
+        if (errorHandler == null) {
+            ErrorHandler errors = new ErrorHandler(false);
+            Section in = new Section(errorsOffset, errorsEnd);
+            int[] totals = new int[ERROR_TYPES.length];
+            for (int t = 0; t < totals.length; t++) totals[t] = in.varint();
+            int count = in.varint();
+            // offset is that of the last in-source lexeme; lexemes stored as strings do not move it
+            int line = 0, offset = 0;
+            for (int i = 0; i < count; i++) {
+                int head = in.u8();
+                ErrorHandler.ErrorType type = ERROR_TYPES[head & ~IN_SOURCE];
+                line += unzigzag(in.varint());
+                int column = in.varint();
+                CharSequence lexemeSource;
+                int start;
+                int length;
+                if ((head & IN_SOURCE) != 0) {
+                    offset += unzigzag(in.varint());
+                    length = in.varint();
+                    lexemeSource = text;
+                    start = offset;
+                } else {
+                    lexemeSource = in.string();
+                    length = lexemeSource.length();
+                    start = 0;
+                }
+                String reason = in.string();
+                if (reason.isEmpty()) {
+                    errors.report(type, line, column, lexemeSource, start, length);
+                } else {
+                    errors.reportError(type, line, column, lexemeSource.subSequence(start, start + length).toString(), reason);
+                }
+                totals[type.ordinal()]--;
+            }
+            for (int t = 0; t < totals.length; t++) errors.countUnrecorded(ERROR_TYPES[t], totals[t]);
+            errorHandler = errors;
+        }
+        return errorHandler;
+    }
+
+    private static int zigzag(int value) { return (value << 1) ^ (value >> 31); }
+    private static int unzigzag(int value) { return (value >>> 1) ^ -(value & 1); }
+
+    /** A section copied out of the mapping in one bulk get; decoding a heap array is much faster. */
+    private final class Section {
+        private final byte[] bytes;
+        private int pos;
+
+        Section(int start, int end) {
+            bytes = new byte[end - start];
+            data.get(start, bytes);
+        }
+
+        int u8() { return bytes[pos++] & 0xFF; }
+
+        int varint() {
+            int b = bytes[pos++];
+            if (b >= 0) return b;
+            int value = b & 0x7F;
+            for (int shift = 7; ; shift += 7) {
+                b = bytes[pos++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        String string() {
+            int length = varint();
+            if (length == 0) return "";
+            pos += length;
+            return new String(bytes, pos - length, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Saves the scan of a file, loads it back and compares every token,
+     * symbol and error. A custom-reason error is recorded after each error
+     * the scanner found, so in-source lexemes and lexemes stored as strings
+     * are interleaved the way hand-made error lists mix them.
+     */
+    static boolean checkRoundTrip(Path input) throws IOException {
+        ManualScanner scanner = ManualScanner.openFile(input);
+        scanner.getErrorHandler().setSink(null);
+        TokenStream tokens = scanner.scan();
+        ErrorHandler found = scanner.getErrorHandler();
+        ErrorHandler errors = new ErrorHandler(false);
+        List<ErrorHandler.LexicalError> records = found.getErrors();
+        for (int i = 0; i < records.size(); i++) {
+            ErrorHandler.LexicalError error = records.get(i);
+            errors.report(error.getType(), error.getLine(), error.getColumn(), found.getSource(i),
+                    found.getOffset(i), error.getLexeme().length());
+            errors.reportError(error.getType(), error.getLine(), error.getColumn(), "!" + i, "Check " + i);
+        }
+
+        Path saved = Files.createTempFile("check", ".ptok");
+        try {
+            write(saved, tokens, scanner.getSymbolTable(), errors);
+            TokenFile file = open(saved);
+            int mismatches = 0;
+            TokenStream loaded = file.getTokens();
+            if (loaded.size() != tokens.size()) {
+                System.out.printf("%d tokens saved, %d loaded%n", tokens.size(), loaded.size());
+                mismatches++;
+            }
+            for (int i = 0; i < Math.min(tokens.size(), loaded.size()); i++) {
+                if (!tokens.get(i).toString().equals(loaded.get(i).toString())
+                        || tokens.getSymbolId(i) != loaded.getSymbolId(i)) {
+                    if (++mismatches <= 10) System.out.println("Token " + i + ": " + tokens.get(i) + " came back as " + loaded.get(i));
+                }
+            }
+            Collection<SymbolTable.SymbolEntry> symbols = scanner.getSymbolTable().getAllSymbols();
+            Collection<SymbolTable.SymbolEntry> loadedSymbols = file.getSymbolTable().getAllSymbols();
+            if (!symbols.toString().equals(loadedSymbols.toString())) {
+                System.out.println("Symbol tables differ");
+                mismatches++;
+            }
+            List<ErrorHandler.LexicalError> expected = errors.getErrors();
+            List<ErrorHandler.LexicalError> loadedErrors = file.getErrorHandler().getErrors();
+            if (!expected.toString().equals(loadedErrors.toString())) {
+                for (int i = 0; i < Math.min(expected.size(), loadedErrors.size()); i++) {
+                    if (!expected.get(i).toString().equals(loadedErrors.get(i).toString()) && ++mismatches <= 10) {
+                        System.out.println("Error " + i + ": " + expected.get(i) + " came back as " + loadedErrors.get(i));
+                    }
+                }
+                if (expected.size() != loadedErrors.size()) {
+                    System.out.printf("%d errors saved, %d loaded%n", expected.size(), loadedErrors.size());
+                    mismatches++;
+                }
+            }
+            System.out.printf("%s: %s, %d tokens, %d symbols, %d errors%n", input, mismatches == 0 ? "round trip OK" : "ROUND TRIP FAILED",
+                    tokens.size(), symbols.size(), expected.size());
+            return mismatches == 0;
+        } finally {
+            Files.delete(saved);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("save")) {
+            ManualScanner scanner = ManualScanner.scanFile(Paths.get(args[1]));
+            write(Paths.get(args[2]), scanner);
+            System.out.printf("Saved %d tokens to %s (%d bytes)%n", scanner.getTokens().size(), args[2],
+                    Files.size(Paths.get(args[2])));
+        } else if (args.length == 2 && args[0].equals("print")) {
+            TokenFile file = open(Paths.get(args[1]));
+            for (Token token : file.getTokens()) System.out.println(token);
+            file.getSymbolTable().printTable();
+            if (file.getErrorHandler().hasErrors()) file.getErrorHandler().printSummary();
+        } else if (args.length == 2 && args[0].equals("check")) {
+            if (!checkRoundTrip(Paths.get(args[1]))) System.exit(1);
+        } else {
+            System.out.println("Usage: java TokenFile save <input.pooh> <output.ptok>");
+            System.out.println("       java TokenFile print <file.ptok>");
+            System.out.println("       java TokenFile check <input.pooh>");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * TokenStream - Columnar token storage backed by parallel primitive arrays
+ * CS4031 - Compiler Construction Assignment 01
+ *
+ * Each token is stored as (type ordinal, start offset, length, line, column,
+ * symbol ID) in fixed-size chunks, so a scan allocates one set of arrays per CHUNK_SIZE
+ * tokens instead of one Token and one String per token.
+ * Lexemes are sliced out of the source only when asked for, and get(i)
+ * returns a Token view so existing List<Token> callers keep working.
+ * A stream given a LineIndex stores no lines or columns at all and
+ * resolves them from the start offsets when read, except EOF's, which is
+ * stored as given.
+ */
+public class TokenStream extends AbstractList<Token> implements RandomAccess {
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int MAX_RETAINED_POOL = 1 << 16;
+
+    private CharSequence source;
+    private StringBuilder pool;
+
+    private byte[][] types;
+    private int[][] starts;
+    private int[][] lengths;
+    private int[][] lines;
+    private int[][] columns;
+    private int[][] symbolIds;
+    private int chunkCount;
+    private int size;
+    // When set, lines and columns are not stored but resolved from starts
+    private LineIndex lineIndex;
+    // EOF's position is kept as given, as an index cannot tell where it was reported
+    private int eofIndex = -1;
+    private int eofLine;
+    private int eofColumn;
+
+    /** Stream whose token offsets index into the given source text. */
+    public TokenStream(CharSequence source) {
+        this.source = source;
+        this.types = new byte[4][];
+        this.starts = new int[4][];
+        this.lengths = new int[4][];
+        this.lines = new int[4][];
+        this.columns = new int[4][];
+        this.symbolIds = new int[4][];
+        this.chunkCount = 0;
+        this.size = 0;
+    }
+
+    /** Stream that keeps its own lexeme pool, for scanners that do not retain the source. */
+    public TokenStream() {
+        this(new StringBuilder());
+        this.pool = (StringBuilder) source;
+    }
+
+    /**
+     * Empties the stream and points it at a new source, keeping the arrays
+     * already allocated, for scanners that are reused (see ManualScanner.reset).
+     */
+    void reset(CharSequence source) {
+        this.source = source;
+        this.pool = null;
+        this.size = 0;
+        setLineIndex(null);
+    }
+
+    /**
+     * Empties a stream that keeps its own lexeme pool, keeping the arrays
+     * already allocated (see Yylex.scanAll). A pool grown past
+     * MAX_RETAINED_POOL chars is dropped rather than kept.
+     */
+    void reset() {
+        if (pool == null) throw new IllegalStateException("TokenStream is backed by a source");
+        if (pool.capacity() > MAX_RETAINED_POOL) {
+            pool = new StringBuilder();
+            source = pool;
+        } else {
+            pool.setLength(0);
+        }
+        this.size = 0;
+        setLineIndex(null);
+    }
+
+    /**
+     * Makes an empty stream resolve lines and columns through index instead
+     * of storing them, which takes a token from 21 bytes to 13; add() then
+     * ignores its line and column. Null goes back to storing them.
+     */
+    void setLineIndex(LineIndex index) {
+        if (size != 0) throw new IllegalStateException("Line index must be set on an empty stream");
+        this.lineIndex = index;
+        this.eofIndex = -1;
+    }
+
+    /** Appends a token whose lexeme is source[start, start + length). */
+    public void add(TokenType type, int start, int length, int line, int column) {
+        add(type, start, length, line, column, -1);
+    }
+
+    /** Appends a token carrying a symbol table ID (-1 for none). */
+    public void add(TokenType type, int start, int length, int line, int column, int symbolId) {
+        int chunk = size >>> CHUNK_SHIFT;
+        int slot = size & CHUNK_MASK;
+        if (slot == 0) ensureChunks(size + 1);
+        types[chunk][slot] = (byte) type.ordinal();
+        starts[chunk][slot] = start;
+        lengths[chunk][slot] = length;
+        if (lineIndex == null) {
+            lines[chunk][slot] = line;
+            columns[chunk][slot] = column;
+        } else if (type == TokenType.EOF) {
+            eofIndex = size;
+            eofLine = line;
+            eofColumn = column;
+        }
+        symbolIds[chunk][slot] = symbolId;
+        size++;
+    }
+
+    /** Appends a token whose lexeme is copied into the stream's own pool. */
+    public void add(TokenType type, CharSequence lexeme, int line, int column) {
+        add(type, lexeme, line, column, -1);
+    }
+
+    /** Appends a pooled-lexeme token carrying a symbol table ID (-1 for none). */
+    public void add(TokenType type, CharSequence lexeme, int line, int column, int symbolId) {
+        if (pool == null) throw new IllegalStateException("TokenStream is backed by a source");
+        int start = pool.length();
+        pool.append(lexeme);
+        add(type, start, lexeme.length(), line, column, symbolId);
+    }
+
+    /** Appends a pooled-lexeme token whose lexeme is chars[offset, offset + length). */
+    public void add(TokenType type, char[] chars, int offset, int length, int line, int column, int symbolId) {
+        if (pool == null) throw new IllegalStateException("TokenStream is backed by a source");
+        int start = pool.length();
+        pool.append(chars, offset, length);
+        add(type, start, length, line, column, symbolId);
+    }
+
+    /**
+     * Grows the stream by n entries to be filled with copyFrom, so several
+     * threads can copy into disjoint ranges without reallocating.
+     */
+    void extend(int n) {
+        ensureChunks(size + n);
+        size += n;
+    }
+
+    /**
+     * Copies all of src into entries [destIndex, destIndex + src.size()),
+     * shifting lines by lineOffset and mapping each symbol ID through symbolMap.
+     * Both streams must either store lines or share one LineIndex.
+     */
+    void copyFrom(TokenStream src, int destIndex, int lineOffset, int[] symbolMap) {
+        for (int i = 0; i < src.size; i++) {
+            int s = i >>> CHUNK_SHIFT, sSlot = i & CHUNK_MASK;
+            int d = (destIndex + i) >>> CHUNK_SHIFT, dSlot = (destIndex + i) & CHUNK_MASK;
+            types[d][dSlot] = src.types[s][sSlot];
+            starts[d][dSlot] = src.starts[s][sSlot];
+            lengths[d][dSlot] = src.lengths[s][sSlot];
+            if (lineIndex == null) {
+                lines[d][dSlot] = src.lines[s][sSlot] + lineOffset;
+                columns[d][dSlot] = src.columns[s][sSlot];
+            }
+            int symbolId = src.symbolIds[s][sSlot];
+            symbolIds[d][dSlot] = symbolId < 0 ? symbolId : symbolMap[symbolId];
+        }
+    }
+
+    // Makes entries up to newSize writable. Chunks kept from a scan with a
+    // LineIndex get their line and column arrays when first reused without one.
+    private void ensureChunks(int newSize) {
+        if (lineIndex == null) {
+            for (int chunk = size >>> CHUNK_SHIFT; chunk < chunkCount && chunk << CHUNK_SHIFT < newSize; chunk++) {
+                if (lines[chunk] == null) {
+                    lines[chunk] = new int[CHUNK_SIZE];
+                    columns[chunk] = new int[CHUNK_SIZE];
+                }
+            }
+        }
+        while (chunkCount << CHUNK_SHIFT < newSize) addChunk();
+    }
+
+    private void addChunk() {
+        if (chunkCount == types.length) {
+            int newLength = chunkCount * 2;
+            types = Arrays.copyOf(types, newLength);
+            starts = Arrays.copyOf(starts, newLength);
+            lengths = Arrays.copyOf(lengths, newLength);
+            lines = Arrays.copyOf(lines, newLength);
+            columns = Arrays.copyOf(columns, newLength);
+            symbolIds = Arrays.copyOf(symbolIds, newLength);
+        }
+        types[chunkCount] = new byte[CHUNK_SIZE];
+        starts[chunkCount] = new int[CHUNK_SIZE];
+        lengths[chunkCount] = new int[CHUNK_SIZE];
+        if (lineIndex == null) {
+            lines[chunkCount] = new int[CHUNK_SIZE];
+            columns[chunkCount] = new int[CHUNK_SIZE];
+        }
+        symbolIds[chunkCount] = new int[CHUNK_SIZE];
+        chunkCount++;
+    }
+
+    @Override
+    public int size() { return size; }
+
+    public TokenType getType(int i) { checkIndex(i); return TYPES[types[i >>> CHUNK_SHIFT][i & CHUNK_MASK]]; }
+    public int getStart(int i) { checkIndex(i); return starts[i >>> CHUNK_SHIFT][i & CHUNK_MASK]; }
+    public int getLength(int i) { checkIndex(i); return lengths[i >>> CHUNK_SHIFT][i & CHUNK_MASK]; }
+    public int getLine(int i) {
+        checkIndex(i);
+        if (lineIndex == null) return lines[i >>> CHUNK_SHIFT][i & CHUNK_MASK];
+        return i == eofIndex ? eofLine : lineIndex.getLine(getStart(i));
+    }
+    public int getColumn(int i) {
+        checkIndex(i);
+        if (lineIndex == null) return columns[i >>> CHUNK_SHIFT][i & CHUNK_MASK];
+        return i == eofIndex ? eofColumn : lineIndex.getColumn(getStart(i));
+    }
+    public int getSymbolId(int i) { checkIndex(i); return symbolIds[i >>> CHUNK_SHIFT][i & CHUNK_MASK]; }
+    public CharSequence getSource() { return source; }
+    /** The index lines and columns are resolved through, or null if they are stored. */
+    public LineIndex getLineIndex() { return lineIndex; }
+
+    /** Materializes the lexeme of token i from the source. */
+    public String getLexeme(int i) {
+        int start = getStart(i);
+        return source.subSequence(start, start + getLength(i)).toString();
+    }
+
+    /** Zero-copy view of the lexeme of token i. */
+    public CharSlice getLexemeView(int i) {
+        int start = getStart(i);
+        return new CharSlice(source, start, start + getLength(i));
+    }
+
+    /** Appends token i as Token.toString() renders it, without creating the Token or its lexeme. */
+    public void appendTo(int i, Appendable out) throws IOException {
+        int start = getStart(i);
+        Token.appendTo(out, getType(i), source, start, start + getLength(i), getLine(i), getColumn(i));
+    }
+
+    /** Token view of entry i; allocated on demand, lexeme materialized lazily. */
+    @Override
+    public Token get(int i) {
+        return new Token(getType(i), getLexemeView(i), getLine(i), getColumn(i), getSymbolId(i));
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+}
@@ -1,4 +1,7 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.*;
 
 /**
@@ -7,71 +10,294 @@ import java.util.*;
  * 
  * Supports only: Int lit, Float lit, Identifier, Single-line comment, 
  * Boolean, Punctuation, Whitespace
+ * 
+ * Like JFlex, lexemes are not copied while scanning: markedPos marks the
+ * start of the current lexeme in buffer. A refill keeps the marked text
+ * (compacting it to the front, or growing the buffer when it fills it);
+ * comments and whitespace are scanned unmarked, so they are never copied.
  */
 public class Yylex {
     
     private Reader reader;
+    private String text;
+    private int textPos;
+    private ReadableByteChannel channel;
+    private ByteBuffer bytes;
+    private byte[] byteBuffer;
     private char[] buffer;
+    private CharBuffer bufferView;
+    // Length buffer was created with; reset() shrinks it back after a long lexeme grew it
+    private final int bufferSize;
     private int bufferPos;
     private int bufferEnd;
     private static final int BUFFER_SIZE = 16384;
+    private static final int NO_MARK = -1;
     
     private int yyline;
     private int yycolumn;
-    private StringBuilder yytext;
+    private int markedPos;
     private int tokenStartLine;
     private int tokenStartColumn;
+    private int symbolId;
     
     private SymbolTable symbolTable;
     private ErrorHandler errorHandler;
-    private int commentCount;
+    private ScannerMetrics metrics;
     private boolean eof;
+    // Stream returned by scanAll(), emptied and refilled by the next call
+    private TokenStream tokens;
+    // Set while the scanner sits idle in a ScannerPool
+    boolean pooled;
     
-    private static final Set<String> BOOLEAN_LITERALS = new HashSet<>(Arrays.asList("true", "false"));
+    public Yylex(Reader reader) { this(reader, BUFFER_SIZE); }
     
-    public Yylex(Reader reader) {
+    /** Reads through a buffer of bufferSize chars. */
+    public Yylex(Reader reader, int bufferSize) {
+        this(bufferSize);
         this.reader = reader;
-        this.buffer = new char[BUFFER_SIZE];
+    }
+    
+    public Yylex(InputStream in) { this(new InputStreamReader(in)); }
+    
+    /** Copies straight out of the String, without a Reader. */
+    public Yylex(String source) {
+        this(BUFFER_SIZE);
+        this.text = source;
+    }
+    
+    public Yylex(ReadableByteChannel channel) { this(channel, BUFFER_SIZE); }
+    
+    /**
+     * Reads a blocking channel into a direct buffer of bufferSize bytes and
+     * lexes the bytes without charset decoding: each byte is one character,
+     * and bytes >= 128 are reported as invalid characters, as with
+     * ManualScanner(ByteBuffer).
+     */
+    public Yylex(ReadableByteChannel channel, int bufferSize) {
+        this(bufferSize);
+        this.channel = channel;
+        this.bytes = ByteBuffer.allocateDirect(bufferSize);
+        this.bytes.flip();
+    }
+    
+    public Yylex(ByteBuffer bytes) { this(bytes, BUFFER_SIZE); }
+    
+    /**
+     * Lexes the bytes between the buffer's position and limit, heap or
+     * direct, one byte per character; the buffer's position is not changed.
+     */
+    public Yylex(ByteBuffer bytes, int bufferSize) {
+        this(bufferSize);
+        this.bytes = bytes.slice();
+    }
+    
+    private Yylex(int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        this.bufferSize = bufferSize;
+        this.buffer = new char[bufferSize];
+        this.bufferView = CharBuffer.wrap(buffer);
         this.bufferPos = 0;
         this.bufferEnd = 0;
+        this.markedPos = NO_MARK;
         this.yyline = 0;
         this.yycolumn = 0;
-        this.yytext = new StringBuilder();
         this.symbolTable = new SymbolTable();
         this.errorHandler = new ErrorHandler();
-        this.commentCount = 0;
+        this.metrics = new ScannerMetrics();
         this.eof = false;
     }
     
-    public Yylex(InputStream in) { this(new InputStreamReader(in)); }
-    public Yylex(String source) { this(new StringReader(source)); }
+    /**
+     * Prepares this scanner to lex new input as if it had just been
+     * constructed, reusing its buffers, symbol table, error handler and
+     * metrics. Those are the same objects as before, emptied: results of the
+     * previous scan that must be kept have to be copied first. The error
+     * handler keeps its sink and limit. A buffer grown by a long lexeme goes
+     * back to its original size.
+     */
+    public Yylex reset(String source) {
+        resetState();
+        this.text = source;
+        return this;
+    }
+    
+    public Yylex reset(Reader reader) {
+        resetState();
+        this.reader = reader;
+        return this;
+    }
+    
+    /** Like reset(String) for the bytes between the buffer's position and limit; see Yylex(ByteBuffer). */
+    public Yylex reset(ByteBuffer bytes) {
+        resetState();
+        this.bytes = bytes.slice();
+        return this;
+    }
+    
+    /** Drops the references to the last input, so an idle pooled scanner does not keep it reachable. */
+    void clearInput() {
+        reader = null;
+        text = null;
+        channel = null;
+        bytes = null;
+        if (tokens != null) tokens.reset();
+        shrinkBuffer();
+    }
+    
+    private void shrinkBuffer() {
+        if (buffer.length > bufferSize) {
+            buffer = new char[bufferSize];
+            bufferView = CharBuffer.wrap(buffer);
+            bufferPos = bufferEnd = 0;
+            markedPos = NO_MARK;
+        }
+    }
+    
+    private void resetState() {
+        reader = null;
+        text = null;
+        textPos = 0;
+        channel = null;
+        bytes = null;
+        shrinkBuffer();
+        bufferPos = 0;
+        bufferEnd = 0;
+        markedPos = NO_MARK;
+        yyline = 0;
+        yycolumn = 0;
+        tokenStartLine = 0;
+        tokenStartColumn = 0;
+        symbolId = 0;
+        symbolTable.clear();
+        errorHandler.clear();
+        metrics.clear();
+        eof = false;
+    }
     
     public SymbolTable getSymbolTable() { return symbolTable; }
     public ErrorHandler getErrorHandler() { return errorHandler; }
-    public int getCommentCount() { return commentCount; }
+    public ScannerMetrics getMetrics() { return metrics; }
+    public int getCommentCount() { return Math.toIntExact(metrics.getTokenCount(TokenType.SINGLE_LINE_COMMENT)); }
     
-    private int read() throws IOException {
-        if (bufferPos >= bufferEnd) {
-            bufferEnd = reader.read(buffer, 0, BUFFER_SIZE);
-            bufferPos = 0;
-            if (bufferEnd <= 0) { eof = true; return -1; }
+    /** Reads up to len chars into buffer at off from the reader or the byte input; -1 at end of input. */
+    private int fill(int off, int len) throws IOException {
+        if (reader != null) return reader.read(buffer, off, len);
+        if (text != null) {
+            int n = Math.min(len, text.length() - textPos);
+            if (n <= 0) return -1;
+            text.getChars(textPos, textPos + n, buffer, off);
+            textPos += n;
+            return n;
+        }
+        if (channel != null && !bytes.hasRemaining()) {
+            bytes.clear();
+            int n;
+            do { n = channel.read(bytes); } while (n == 0);
+            bytes.flip();
+            if (n < 0) return -1;
         }
+        if (byteBuffer == null) byteBuffer = new byte[buffer.length];
+        int n = Math.min(Math.min(bytes.remaining(), len), byteBuffer.length);
+        if (n == 0) return -1;
+        bytes.get(byteBuffer, 0, n);
+        for (int i = 0; i < n; i++) buffer[off + i] = (char) (byteBuffer[i] & 0xFF);
+        return n;
+    }
+    
+    /**
+     * Called when buffer is exhausted. Moves the marked lexeme (if any) to the
+     * front, doubling buffer when the lexeme already fills it, then reads more
+     * input after it. Returns false at end of input; the lexeme stays valid.
+     */
+    private boolean refill() throws IOException {
+        int keep = markedPos == NO_MARK ? bufferEnd : markedPos;
+        int kept = bufferEnd - keep;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, kept);
+        } else if (kept == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            bufferView = CharBuffer.wrap(buffer);
+        }
+        if (markedPos != NO_MARK) markedPos = 0;
+        bufferPos = bufferEnd = kept;
+        long startTime = System.nanoTime();
+        int n = fill(kept, buffer.length - kept);
+        metrics.addNanos(ScannerMetrics.Phase.READ, System.nanoTime() - startTime);
+        if (n <= 0) return false;
+        metrics.addBytes(n);
+        bufferEnd += n;
+        return true;
+    }
+    
+    private int read() throws IOException {
+        if (bufferPos >= bufferEnd && !refill()) { eof = true; return -1; }
         char c = buffer[bufferPos++];
-        if (c == '\n') { yyline++; yycolumn = 0; } else { yycolumn++; }
+        if (c == '\n') { yyline++; yycolumn = 0; metrics.countLine(); } else { yycolumn++; }
         return c;
     }
     
+    /**
+     * Fast paths for the runs that make up most of typical input: they
+     * search buffer directly instead of calling read() per character, and
+     * count lines and columns the same way. Both run unmarked.
+     */
+    private void skipWhitespace() throws IOException {
+        do {
+            char[] buffer = this.buffer;
+            int i = bufferPos;
+            int end = bufferEnd;
+            for (; i < end; i++) {
+                char c = buffer[i];
+                if (c == ' ' || c == '\t' || c == '\r') {
+                    yycolumn++;
+                } else if (c == '\n') {
+                    yyline++;
+                    yycolumn = 0;
+                    metrics.countLine();
+                } else {
+                    break;
+                }
+            }
+            bufferPos = i;
+            if (i < end) return;
+        } while (refill());
+    }
+    
+    /** Skips up to (not including) the next '\n' or the end of input; returns the number of chars skipped. */
+    private int skipToNewline() throws IOException {
+        int skipped = 0;
+        do {
+            char[] buffer = this.buffer;
+            int start = bufferPos;
+            int i = start;
+            int end = bufferEnd;
+            while (i < end && buffer[i] != '\n') i++;
+            skipped += i - start;
+            yycolumn += i - start;
+            bufferPos = i;
+            if (i < end) return skipped;
+        } while (refill());
+        return skipped;
+    }
+    
     private int peek() throws IOException {
-        if (bufferPos >= bufferEnd) {
-            bufferEnd = reader.read(buffer, 0, BUFFER_SIZE);
-            bufferPos = 0;
-            if (bufferEnd <= 0) return -1;
-        }
+        if (bufferPos >= bufferEnd && !refill()) return -1;
         return buffer[bufferPos];
     }
     
+    private int yylength() { return bufferPos - markedPos; }
+    private String yytext() { return new String(buffer, markedPos, yylength()); }
+    
+    private boolean yytextEquals(String s) {
+        if (s.length() != yylength()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (buffer[markedPos + i] != s.charAt(i)) return false;
+        }
+        return true;
+    }
+    
     private Token token(TokenType type) {
-        return new Token(type, yytext.toString(), tokenStartLine + 1, tokenStartColumn + 1);
+        return new Token(type, yytext(), tokenStartLine + 1, tokenStartColumn + 1, symbolId);
     }
     
     private boolean isDigit(int c) { return c >= '0' && c <= '9'; }
@@ -79,130 +305,192 @@ public class Yylex {
     private boolean isLowerCase(int c) { return c >= 'a' && c <= 'z'; }
     
     public Token yylex() throws IOException {
+        return token(nextType());
+    }
+    
+    /**
+     * Like yylex() without building the Token: returns the next token's
+     * type; the accessors below describe it until the next call.
+     */
+    TokenType nextType() throws IOException {
+        TokenType type = next();
+        metrics.countToken(type, yylength());
+        if (type == TokenType.EOF) errorHandler.flush();
+        return type;
+    }
+    
+    // The token last returned by nextType()
+    int tokenLength() { return yylength(); }
+    int tokenLine() { return tokenStartLine + 1; }
+    int tokenColumn() { return tokenStartColumn + 1; }
+    int tokenSymbolId() { return symbolId; }
+    String tokenText() { return yytext(); }
+    /** Offset just past the token in the whole input (chars for a Reader, bytes otherwise). */
+    long tokenEnd() { return metrics.getBytes() - (bufferEnd - bufferPos); }
+    
+    /** Whether the token's lexeme equals source[start, start + length). */
+    boolean lexemeEquals(CharSequence source, int start, int length) {
+        if (length != yylength()) return false;
+        for (int i = 0; i < length; i++) {
+            if (buffer[markedPos + i] != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+    
+    /** Scans the next token, leaving its lexeme in buffer[markedPos, bufferPos), and returns its type. */
+    private TokenType next() throws IOException {
         while (!eof) {
-            yytext.setLength(0);
+            markedPos = bufferPos;
+            symbolId = -1;
             tokenStartLine = yyline;
             tokenStartColumn = yycolumn;
             
             int c = read();
-            if (c == -1) return token(TokenType.EOF);
+            if (c == -1) return TokenType.EOF;
             
             // Skip whitespace
-            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') continue;
-            
-            yytext.append((char) c);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                markedPos = NO_MARK;
+                skipWhitespace();
+                continue;
+            }
             
             // Single-line comment: ##[^\n]*
             if (c == '#') {
                 if (peek() == '#') {
-                    yytext.append((char) read());
-                    while ((c = read()) != -1 && c != '\n') yytext.append((char) c);
-                    commentCount++;
+                    markedPos = NO_MARK;
+                    read();
+                    int commentLength = 2 + skipToNewline();
+                    read();
+                    metrics.countToken(TokenType.SINGLE_LINE_COMMENT, commentLength);
                     continue;
                 } else {
                     errorHandler.invalidCharacter((char) c, tokenStartLine + 1, tokenStartColumn + 1);
-                    return token(TokenType.ERROR);
+                    metrics.countError(ErrorHandler.ErrorType.INVALID_CHARACTER);
+                    return TokenType.ERROR;
                 }
             }
             
             // Number (Integer or Float)
             if (isDigit(c)) {
-                while (peek() != -1 && isDigit(peek())) yytext.append((char) read());
+                while (peek() != -1 && isDigit(peek())) read();
                 
                 if (peek() == '.') {
-                    yytext.append((char) read());
+                    read();
                     int decimalDigits = 0;
                     while (peek() != -1 && isDigit(peek()) && decimalDigits < 6) {
-                        yytext.append((char) read());
+                        read();
                         decimalDigits++;
                     }
                     if (isDigit(peek())) {
-                        while (isDigit(peek())) yytext.append((char) read());
-                        errorHandler.tooManyDecimals(yytext.toString(), tokenStartLine + 1, tokenStartColumn + 1);
-                        return token(TokenType.ERROR);
+                        while (isDigit(peek())) read();
+                        errorHandler.tooManyDecimals(yytext(), tokenStartLine + 1, tokenStartColumn + 1);
+                        metrics.countError(ErrorHandler.ErrorType.TOO_MANY_DECIMALS);
+                        return TokenType.ERROR;
                     }
                     
                     int p = peek();
                     if (p == 'e' || p == 'E') {
-                        yytext.append((char) read());
+                        read();
                         p = peek();
-                        if (p == '+' || p == '-') yytext.append((char) read());
+                        if (p == '+' || p == '-') read();
                         if (!isDigit(peek())) {
-                            errorHandler.invalidNumber(yytext.toString(), tokenStartLine + 1, tokenStartColumn + 1);
-                            return token(TokenType.ERROR);
+                            errorHandler.invalidNumber(yytext(), tokenStartLine + 1, tokenStartColumn + 1);
+                            metrics.countError(ErrorHandler.ErrorType.MALFORMED_NUMBER);
+                            return TokenType.ERROR;
                         }
-                        while (peek() != -1 && isDigit(peek())) yytext.append((char) read());
+                        while (peek() != -1 && isDigit(peek())) read();
                     }
-                    return token(TokenType.FLOAT_LIT);
+                    return TokenType.FLOAT_LIT;
                 }
                 
                 int p = peek();
                 if (p == 'e' || p == 'E') {
-                    yytext.append((char) read());
+                    read();
                     p = peek();
-                    if (p == '+' || p == '-') yytext.append((char) read());
+                    if (p == '+' || p == '-') read();
                     if (!isDigit(peek())) {
-                        errorHandler.invalidNumber(yytext.toString(), tokenStartLine + 1, tokenStartColumn + 1);
-                        return token(TokenType.ERROR);
+                        errorHandler.invalidNumber(yytext(), tokenStartLine + 1, tokenStartColumn + 1);
+                        metrics.countError(ErrorHandler.ErrorType.MALFORMED_NUMBER);
+                        return TokenType.ERROR;
                     }
-                    while (peek() != -1 && isDigit(peek())) yytext.append((char) read());
-                    return token(TokenType.FLOAT_LIT);
+                    while (peek() != -1 && isDigit(peek())) read();
+                    return TokenType.FLOAT_LIT;
                 }
                 
-                return token(TokenType.INT_LIT);
+                return TokenType.INT_LIT;
             }
             
             // Identifier: [A-Z][a-z0-9_]{0,30}
             if (isUpperCase(c)) {
                 while (peek() != -1 && (isLowerCase(peek()) || isDigit(peek()) || peek() == '_')) {
-                    if (yytext.length() >= 31) {
-                        while (isLowerCase(peek()) || isDigit(peek()) || peek() == '_') yytext.append((char) read());
-                        errorHandler.invalidIdentifier(yytext.toString(), tokenStartLine + 1, tokenStartColumn + 1);
-                        return token(TokenType.ERROR);
+                    if (yylength() >= 31) {
+                        while (isLowerCase(peek()) || isDigit(peek()) || peek() == '_') read();
+                        errorHandler.invalidIdentifier(yytext(), tokenStartLine + 1, tokenStartColumn + 1);
+                        metrics.countError(ErrorHandler.ErrorType.INVALID_IDENTIFIER);
+                        return TokenType.ERROR;
                     }
-                    yytext.append((char) read());
+                    read();
                 }
-                symbolTable.addSymbol(yytext.toString(), null, tokenStartLine + 1, tokenStartColumn + 1);
-                return token(TokenType.IDENTIFIER);
+                symbolId = symbolTable.addSymbol(bufferView, markedPos, bufferPos, null, tokenStartLine + 1, tokenStartColumn + 1);
+                return TokenType.IDENTIFIER;
             }
             
             // Boolean or invalid identifier
             if (isLowerCase(c)) {
-                while (peek() != -1 && isLowerCase(peek())) yytext.append((char) read());
-                if (BOOLEAN_LITERALS.contains(yytext.toString())) {
-                    return token(TokenType.BOOLEAN_LIT);
+                while (peek() != -1 && isLowerCase(peek())) read();
+                if (yytextEquals("true") || yytextEquals("false")) {
+                    return TokenType.BOOLEAN_LIT;
                 } else {
-                    errorHandler.invalidIdentifier(yytext.toString(), tokenStartLine + 1, tokenStartColumn + 1);
-                    return token(TokenType.ERROR);
+                    errorHandler.invalidIdentifier(yytext(), tokenStartLine + 1, tokenStartColumn + 1);
+                    metrics.countError(ErrorHandler.ErrorType.INVALID_IDENTIFIER);
+                    return TokenType.ERROR;
                 }
             }
             
             // Punctuators
             switch (c) {
-                case '(': return token(TokenType.LPAREN);
-                case ')': return token(TokenType.RPAREN);
-                case '{': return token(TokenType.LBRACE);
-                case '}': return token(TokenType.RBRACE);
-                case '[': return token(TokenType.LBRACKET);
-                case ']': return token(TokenType.RBRACKET);
-                case ',': return token(TokenType.COMMA);
-                case ';': return token(TokenType.SEMICOLON);
-                case ':': return token(TokenType.COLON);
+                case '(': return TokenType.LPAREN;
+                case ')': return TokenType.RPAREN;
+                case '{': return TokenType.LBRACE;
+                case '}': return TokenType.RBRACE;
+                case '[': return TokenType.LBRACKET;
+                case ']': return TokenType.RBRACKET;
+                case ',': return TokenType.COMMA;
+                case ';': return TokenType.SEMICOLON;
+                case ':': return TokenType.COLON;
                 default:
                     errorHandler.invalidCharacter((char) c, tokenStartLine + 1, tokenStartColumn + 1);
-                    return token(TokenType.ERROR);
+                    metrics.countError(ErrorHandler.ErrorType.INVALID_CHARACTER);
+                    return TokenType.ERROR;
             }
         }
-        return new Token(TokenType.EOF, "", yyline + 1, yycolumn + 1);
+        markedPos = bufferPos;
+        symbolId = -1;
+        tokenStartLine = yyline;
+        tokenStartColumn = yycolumn;
+        return TokenType.EOF;
     }
     
-    public List<Token> scanAll() throws IOException {
-        List<Token> tokens = new ArrayList<>();
-        Token token;
+    /**
+     * Scans to EOF; the time spent is added to the metrics as SCAN, apart
+     * from READ. The returned stream is this scanner's own, reused by the
+     * next scanAll() after a reset, so copy what must outlive that.
+     */
+    public TokenStream scanAll() throws IOException {
+        long startTime = System.nanoTime();
+        long readNanos = metrics.getNanos(ScannerMetrics.Phase.READ);
+        if (tokens == null) tokens = new TokenStream();
+        else tokens.reset();
+        TokenType type;
         do {
-            token = yylex();
-            tokens.add(token);
-        } while (token.getType() != TokenType.EOF);
+            type = next();
+            metrics.countToken(type, yylength());
+            tokens.add(type, buffer, markedPos, yylength(), tokenStartLine + 1, tokenStartColumn + 1, symbolId);
+        } while (type != TokenType.EOF);
+        errorHandler.flush();
+        readNanos = metrics.getNanos(ScannerMetrics.Phase.READ) - readNanos;
+        metrics.addNanos(ScannerMetrics.Phase.SCAN, System.nanoTime() - startTime - readNanos);
         return tokens;
     }
     